@@ -15,8 +15,8 @@ import org.apache.activemq.ActiveMQConnectionFactory;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
@@ -30,7 +30,7 @@ public class ActiveMQBroker extends Broker {
 
     private Session session;
 
-    private final Map<String, Bridge> bridges = new HashMap<>();
+    private final Map<String, Bridge> bridges = new ConcurrentHashMap<>();
 
     /**
      * Create an activemq broker by providing connection factory.
@@ -8,6 +8,7 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
@@ -18,7 +19,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,6 +36,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class KafkaBroker<K> extends Broker {
 
+    private static final Duration PAUSED_TIMEOUT = Duration.ofMillis(100);
+
     private final KafkaProducer<K, byte[]> producer;
     private final KafkaConsumer<K, byte[]> consumer;
 
@@ -134,6 +140,12 @@ public class KafkaBroker<K> extends Broker {
         this.consumer.subscribe(getSubscribedChannels());
     }
 
+    @Override
+    protected boolean onPause(@NotNull String channel) {
+        // The consumer is not thread-safe, paused channels are applied by the listen loop
+        return true;
+    }
+
     @Override
     protected void onSend(@NotNull String channel, byte[] data) throws IOException {
         send(new ProducerRecord<>(channel, this.partition, this.key, data, this.headers));
@@ -213,10 +225,32 @@ public class KafkaBroker<K> extends Broker {
         return producer;
     }
 
+    private boolean updatePaused() {
+        final Set<String> channels = getPausedChannels();
+        if (channels.isEmpty() && this.consumer.paused().isEmpty()) {
+            return false;
+        }
+        final List<TopicPartition> pause = new ArrayList<>();
+        final List<TopicPartition> resume = new ArrayList<>();
+        for (TopicPartition partition : this.consumer.assignment()) {
+            if (channels.contains(partition.topic())) {
+                pause.add(partition);
+            } else {
+                resume.add(partition);
+            }
+        }
+        // Checked every loop, so partitions assigned by a rebalance are paused too
+        this.consumer.pause(pause);
+        this.consumer.resume(resume);
+        return !pause.isEmpty();
+    }
+
     private void listen() {
         try {
             while (isEnabled() && !Thread.interrupted()) {
-                final ConsumerRecords<K, byte[]> records = this.consumer.poll(this.timeout);
+                final boolean paused = updatePaused();
+                // Poll more often while any channel is paused, so it can be resumed early
+                final ConsumerRecords<K, byte[]> records = this.consumer.poll(paused && this.timeout.compareTo(PAUSED_TIMEOUT) > 0 ? PAUSED_TIMEOUT : this.timeout);
                 if (this.reconnected) {
                     this.reconnected = false;
                     getLogger().log(3, "Kafka connection is alive again");
@@ -1,6 +1,7 @@
 package com.saicone.delivery4j.broker;
 
 import com.saicone.delivery4j.Broker;
+import com.saicone.delivery4j.util.Buffers;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import io.nats.client.Nats;
@@ -9,6 +10,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.function.Consumer;
 
@@ -22,6 +24,7 @@ public class NatsBroker extends Broker {
     private final Connection connection;
 
     private Dispatcher dispatcher;
+    private String inbox;
 
     /**
      * Create a nats broker with provided parameters.
@@ -99,7 +102,7 @@ public class NatsBroker extends Broker {
         this.dispatcher = this.connection.createDispatcher(msg -> {
             final String channel = msg.getSubject();
             try {
-                receive(channel, msg.getData());
+                receive(channel, ByteBuffer.wrap(msg.getData()), msg.getReplyTo());
             } catch (Throwable t) {
                 getLogger().log(2, "Cannot process received message from channel '" + channel + "'", t);
             }
@@ -107,6 +110,9 @@ public class NatsBroker extends Broker {
         for (String channel : getSubscribedChannels()) {
             this.dispatcher.subscribe(channel);
         }
+        // Replies are published directly into the inbox of this connection
+        this.inbox = this.connection.createInbox();
+        this.dispatcher.subscribe(this.inbox);
     }
 
     @Override
@@ -139,6 +145,19 @@ public class NatsBroker extends Broker {
         }
     }
 
+    @Override
+    protected boolean onRequest(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        if (this.inbox == null) {
+            return false;
+        }
+        try {
+            this.connection.publish(channel, this.inbox, Buffers.toArray(data));
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+        return true;
+    }
+
     /**
      * Get the current connection.
      *
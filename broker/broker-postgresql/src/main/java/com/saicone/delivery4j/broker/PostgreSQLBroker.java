@@ -75,6 +75,8 @@ public class PostgreSQLBroker extends Broker {
      */
     public PostgreSQLBroker(@NotNull DataSource source) {
         this.source = source;
+        // pg_notify payload must be shorter than 8000 bytes, including Base64 overhead
+        setMaxPayloadSize(5900);
     }
 
     @Override
@@ -85,6 +87,7 @@ public class PostgreSQLBroker extends Broker {
                 try (Statement stmt = this.connection.createStatement()) {
                     for (String channel : getSubscribedChannels()) {
                         stmt.execute("LISTEN " + channel);
+                        subscribed(channel);
                     }
                 }
             }
@@ -111,6 +114,12 @@ public class PostgreSQLBroker extends Broker {
         }
     }
 
+    @Override
+    protected boolean isAsyncSubscribe() {
+        // Channels subscribed before connect are only listened once the connection is made
+        return true;
+    }
+
     @Override
     protected void onClose() {
         try {
@@ -127,6 +136,7 @@ public class PostgreSQLBroker extends Broker {
         try (Statement stmt = this.connection.createStatement()) {
             for (@NotNull String channel : channels) {
                 stmt.execute("LISTEN " + channel);
+                subscribed(channel);
             }
         } catch (SQLException e) {
             getLogger().log(2, "Cannot subscribe to channel", e);
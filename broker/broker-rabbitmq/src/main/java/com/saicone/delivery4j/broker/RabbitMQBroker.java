@@ -6,10 +6,12 @@ import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.saicone.delivery4j.Broker;
+import com.saicone.delivery4j.util.Buffers;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,6 +21,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class RabbitMQBroker extends Broker {
 
+    private static final String DIRECT_REPLY_TO = "amq.rabbitmq.reply-to";
+
     private final Connection connection;
     private final String exchange;
 
@@ -124,9 +128,11 @@ public class RabbitMQBroker extends Broker {
             this.cChannel.basicConsume(this.queue, true, (consumerTag, message) -> {
                 final String channel = message.getEnvelope().getRoutingKey();
                 if (getSubscribedChannels().contains(channel)) {
-                    receive(channel, message.getBody());
+                    receive(channel, ByteBuffer.wrap(message.getBody()), message.getProperties().getReplyTo());
                 }
             }, __ -> {}); // Without canceled delivery
+            // Replies of requests sent with this channel, using direct reply-to
+            this.cChannel.basicConsume(DIRECT_REPLY_TO, true, (consumerTag, message) -> receive(DIRECT_REPLY_TO, message.getBody()), __ -> {});
 
             if (this.reconnected) {
                 getLogger().log(3, "RabbitMQ connection is alive again");
@@ -190,6 +196,35 @@ public class RabbitMQBroker extends Broker {
         }
     }
 
+    @Override
+    protected boolean onRequest(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        if (this.cChannel == null) {
+            return false;
+        }
+
+        try {
+            // The reply-to address is replaced by the server with a unique address for this channel
+            this.cChannel.basicPublish(this.exchange, channel, new AMQP.BasicProperties.Builder().replyTo(DIRECT_REPLY_TO).build(), Buffers.toArray(data));
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+        return true;
+    }
+
+    @Override
+    protected void onReply(@NotNull String replyTo, @NotNull ByteBuffer data) throws IOException {
+        if (this.cChannel == null) {
+            return;
+        }
+
+        try {
+            // Direct reply-to addresses are published into default exchange
+            this.cChannel.basicPublish("", replyTo, new AMQP.BasicProperties.Builder().build(), Buffers.toArray(data));
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
     /**
      * Set the reconnection interval that will be used on this redis broker instance.
      *
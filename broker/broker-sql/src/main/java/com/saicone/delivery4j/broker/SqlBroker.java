@@ -59,9 +59,13 @@ public class SqlBroker extends Broker {
     }
 
     /**
-     * Constructs a sql broker using the provided data source instance.
+     * Constructs a sql broker using the provided data source instance.<br>
+     * Take in count that messages are stored on a TEXT column, that can store up to 65535 bytes
+     * including Base64 overhead, so a maximum payload size of 48000 bytes can be set to split
+     * bigger messages into fragments, any application consuming the channels must support fragments.
      *
      * @param source the data source that provide a database connection.
+     * @see #setMaxPayloadSize(int)
      */
     public SqlBroker(@NotNull DataSource source) {
         this.source = source;
@@ -122,6 +122,11 @@ public class ValkeyBroker extends Broker {
         };
     }
 
+    @Override
+    protected boolean isAsyncSubscribe() {
+        return true;
+    }
+
     @Override
     protected void onStart() {
         setEnabled(true);
@@ -272,6 +277,7 @@ public class ValkeyBroker extends Broker {
         @Override
         public void onSubscribe(String channel, int subscribedChannels) {
             getLogger().log(3, "Valkey subscribed to channel '" + channel + "'");
+            subscribed(channel);
         }
 
         @Override
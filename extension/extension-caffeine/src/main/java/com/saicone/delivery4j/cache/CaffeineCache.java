@@ -2,10 +2,12 @@ package com.saicone.delivery4j.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.saicone.delivery4j.MessageChannel;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Caffeine integration for message ID caching.
@@ -15,8 +17,11 @@ import java.util.concurrent.TimeUnit;
 public class CaffeineCache extends MessageChannel.Cache {
 
     private static final Object DUMMY = new Object();
+    // Approximate size of a cache entry with boxed key, including map node and expiration time
+    private static final long ENTRY_SIZE = 96;
 
-    private final Cache<Integer, Object> cache;
+    private final Cache<Long, Object> cache;
+    private final LongAdder saves = new LongAdder();
 
     /**
      * Constructs a caffeine cache with provided expiration.
@@ -25,19 +30,38 @@ public class CaffeineCache extends MessageChannel.Cache {
      * @param unit     the unit that {@code duration} is expressed in.
      */
     public CaffeineCache(long duration, @NotNull TimeUnit unit) {
-        this.cache = Caffeine.newBuilder().expireAfterWrite(duration, unit).build();
+        this.cache = Caffeine.newBuilder().expireAfterWrite(duration, unit).recordStats().build();
     }
 
     @Override
     protected void save(int id) {
+        save((long) id);
+    }
+
+    @Override
+    protected void save(long id) {
+        this.saves.increment();
         this.cache.put(id, DUMMY);
     }
 
     @Override
     public boolean contains(int id) {
+        return contains((long) id);
+    }
+
+    @Override
+    public boolean contains(long id) {
         return this.cache.getIfPresent(id) != null;
     }
 
+    @Override
+    @NotNull
+    public Stats stats() {
+        final CacheStats stats = this.cache.stats();
+        final long size = this.cache.estimatedSize();
+        return new Stats(size, this.saves.sum(), stats.requestCount(), stats.hitCount(), stats.evictionCount(), size * ENTRY_SIZE);
+    }
+
     @Override
     public void clear() {
         this.cache.invalidateAll();
@@ -0,0 +1,102 @@
+package com.saicone.delivery4j.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare timing wheel against {@link ScheduledThreadPoolExecutor} with many pending timers.<br>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DelayedExecutorBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int timers;
+
+    private TimingWheelExecutor wheel;
+    private ScheduledThreadPoolExecutor scheduler;
+
+    private TimingWheelExecutor.Timeout[] timeouts;
+    private Future<?>[] futures;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.wheel = new TimingWheelExecutor(1, TimeUnit.MILLISECONDS, 512, Runnable::run);
+        this.scheduler = new ScheduledThreadPoolExecutor(1);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.timeouts = new TimingWheelExecutor.Timeout[this.timers];
+        this.futures = new Future<?>[this.timers];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.wheel.shutdown();
+        this.scheduler.shutdownNow();
+    }
+
+    // Timeouts that are cancelled before they expire, like request timeouts
+
+    @Benchmark
+    public void wheelScheduleCancel() {
+        for (int i = 0; i < this.timers; i++) {
+            this.timeouts[i] = this.wheel.execute(DelayedExecutorBenchmark::noop, 30 + (i & 1023), TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < this.timers; i++) {
+            this.timeouts[i].cancel();
+        }
+    }
+
+    @Benchmark
+    public void schedulerScheduleCancel() {
+        for (int i = 0; i < this.timers; i++) {
+            this.futures[i] = this.scheduler.schedule(DelayedExecutorBenchmark::noop, 30 + (i & 1023), TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < this.timers; i++) {
+            this.futures[i].cancel(false);
+        }
+    }
+
+    // Short delays that expire, like delayed retries
+
+    @Benchmark
+    public void wheelExpire() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(this.timers);
+        for (int i = 0; i < this.timers; i++) {
+            this.wheel.execute(latch::countDown, 1 + (i & 15), TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    public void schedulerExpire() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(this.timers);
+        for (int i = 0; i < this.timers; i++) {
+            this.scheduler.schedule(latch::countDown, 1 + (i & 15), TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+    }
+
+    private static void noop() {
+    }
+}
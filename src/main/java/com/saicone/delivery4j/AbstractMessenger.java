@@ -2,15 +2,30 @@ package com.saicone.delivery4j;
 
 import com.saicone.delivery4j.util.ByteCodec;
 import com.saicone.delivery4j.util.DelayedExecutor;
+import com.saicone.delivery4j.util.ScheduledDelayedExecutor;
+import com.saicone.delivery4j.util.SerialExecutor;
+import com.saicone.delivery4j.util.TimingWheelExecutor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Messenger abstract class to send messages across channels using a {@link Broker}.<br>
@@ -22,9 +37,17 @@ import java.util.concurrent.Executor;
  */
 public abstract class AbstractMessenger {
 
-    private Executor executor = CompletableFuture.completedFuture(null).defaultExecutor();
+
+    private Executor executor = ScheduledDelayedExecutor.SHARED.isVirtual() ? ScheduledDelayedExecutor.SHARED.asExecutor() : CompletableFuture.completedFuture(null).defaultExecutor();
+    private Executor dispatcher;
     private Broker broker;
-    private final Map<String, MessageChannel> channels = new HashMap<>();
+    private final Map<String, MessageChannel> channels = new ConcurrentHashMap<>();
+    private final Map<String, InboundWorkers> dispatchers = new ConcurrentHashMap<>();
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+    private final Map<String, PendingBatch> pending = new HashMap<>();
+    private final Map<Long, PendingRequest> requests = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final String replyChannel = "delivery4j:reply:" + UUID.randomUUID();
 
     /**
      * Get the current messenger status.
@@ -36,7 +59,8 @@ public abstract class AbstractMessenger {
     }
 
     /**
-     * Get the current executor, by default {@link CompletableFuture#defaultExecutor()} is used.
+     * Get the current executor, by default virtual threads are used on Java 21 or higher,
+     * otherwise {@link CompletableFuture#defaultExecutor()} is used.
      *
      * @return a executor used to run any {@link CompletableFuture} used in this class.
      */
@@ -45,6 +69,16 @@ public abstract class AbstractMessenger {
         return executor;
     }
 
+    /**
+     * Get the current dispatcher executor.
+     *
+     * @return an executor used to consume received messages, null if messages are consumed on the broker thread.
+     */
+    @Nullable
+    public Executor getDispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Get the current broker.
      *
@@ -65,6 +99,17 @@ public abstract class AbstractMessenger {
         return channels;
     }
 
+    /**
+     * Get the channel where replies of requests sent by this messenger are received,
+     * if the current broker doesn't support native requests.
+     *
+     * @return a channel name that is unique for this messenger.
+     */
+    @NotNull
+    public String getReplyChannel() {
+        return replyChannel;
+    }
+
     /**
      * Replace the current executor with a custom implementation.
      *
@@ -74,6 +119,19 @@ public abstract class AbstractMessenger {
         this.executor = executor;
     }
 
+    /**
+     * Set an executor to consume received messages outside the broker thread.<br>
+     * Messages from the same channel are consumed one at a time and in the received order,
+     * while messages from different channels are consumed in parallel, so a slow consumer
+     * only delays its own channel.<br>
+     * Channels with partitioned messages are consumed by one serial worker per partition.
+     *
+     * @param dispatcher an executor to consume received messages, null to consume them on the broker thread.
+     */
+    public void setDispatcher(@Nullable Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     /**
      * Set a broker to transfer data.
      *
@@ -118,6 +176,8 @@ public abstract class AbstractMessenger {
 
         broker.getSubscribedChannels().addAll(getChannels().keySet());
         broker.setConsumer(this::accept);
+        broker.setBufferConsumer(this::accept);
+        broker.setRequestConsumer(this::accept);
         if (this instanceof ByteCodec) {
             try {
                 broker.setCodec((ByteCodec<String>) this);
@@ -139,6 +199,13 @@ public abstract class AbstractMessenger {
      */
     public void close() {
         if (this.broker != null) {
+            // Publish any held message before close
+            for (PendingBatch batch : drain()) {
+                batch.publish();
+            }
+            for (Writer writer : this.writers.values()) {
+                writer.flush();
+            }
             this.broker.close();
         }
     }
@@ -154,6 +221,7 @@ public abstract class AbstractMessenger {
             entry.getValue().clear();
         }
         this.channels.clear();
+        this.dispatchers.clear();
     }
 
     /**
@@ -170,7 +238,10 @@ public abstract class AbstractMessenger {
         MessageChannel messageChannel = this.channels.get(channel);
         if (messageChannel == null) {
             messageChannel = new MessageChannel(channel);
-            this.channels.put(channel, messageChannel);
+            final MessageChannel previous = this.channels.putIfAbsent(channel, messageChannel);
+            if (previous != null) {
+                messageChannel = previous;
+            }
         }
         if (this.broker != null) {
             this.broker.subscribe(channel);
@@ -199,7 +270,10 @@ public abstract class AbstractMessenger {
      * Take in count this method accept any Object as message lines,
      * but everything will be converted to String.<br>
      * If any object is {@code null} or {@code "null"} it will be sent
-     * as null object, and any consumer will get a null object as well.
+     * as null object, and any consumer will get a null object as well.<br>
+     * Messages sent to the same channel are written by a single writer in the same order.<br>
+     * If the channel has a linger time, the message is held to be sent together with
+     * other messages and the returned future is completed once the batch is sent.
      *
      * @param channel the channel name to send the message.
      * @param lines   the message lines.
@@ -207,6 +281,74 @@ public abstract class AbstractMessenger {
      */
     @NotNull
     public CompletableFuture<Void> send(@NotNull String channel, @Nullable Object... lines) {
+        final MessageChannel messageChannel = this.channels.get(channel);
+        if (messageChannel != null && messageChannel.getLinger() > 0 && isEnabled()) {
+            return coalesce(messageChannel, lines);
+        }
+        return send(channel, lines, mc -> mc.encodeBuffer(lines));
+    }
+
+    /**
+     * Send multiple multi-line messages to provided channel name as a single broker message.<br>
+     * Every message is delivered individually to channel consumers, so this method is
+     * equivalent to send each message separately, but using only one broker operation.
+     *
+     * @param channel  the channel name to send the messages.
+     * @param messages the messages to send, every message is an array of lines.
+     * @return         a {@link CompletableFuture} executed when this method is called.
+     */
+    @NotNull
+    public CompletableFuture<Void> sendBatch(@NotNull String channel, @NotNull List<Object[]> messages) {
+        return send(channel, messageChannel -> messageChannel.encodeBatch(messages));
+    }
+
+    /**
+     * Send binary message to provided channel name.<br>
+     * Unlike multi-line messages, the provided data is never converted to String,
+     * and any consumer added with {@link MessageChannel#consumeBytes(ChannelConsumer)}
+     * will get the same byte array.
+     *
+     * @param channel the channel name to send the message.
+     * @param data    the binary message.
+     * @return        a {@link CompletableFuture} executed when this method is called.
+     */
+    @NotNull
+    public CompletableFuture<Void> sendBytes(@NotNull String channel, byte[] data) {
+        return send(channel, messageChannel -> messageChannel.encodeBytes(data));
+    }
+
+    /**
+     * Send typed object to provided channel name.<br>
+     * The object is written by the serializer of the message channel, and any
+     * consumer added with {@link MessageChannel#consumeObject(ChannelConsumer)}
+     * will get the deserialized object without any String conversion.
+     *
+     * @param channel the channel name to send the message.
+     * @param object  the object to send.
+     * @return        a {@link CompletableFuture} executed when this method is called.
+     * @see MessageChannel#serializer(com.saicone.delivery4j.util.MessageSerializer)
+     */
+    @NotNull
+    public CompletableFuture<Void> sendObject(@NotNull String channel, @NotNull Object object) {
+        return send(channel, messageChannel -> messageChannel.encodeObject(object));
+    }
+
+    /**
+     * Send multi-line request to provided channel name and wait for its reply.<br>
+     * The request is replied by the first node with a responder on the channel, and the
+     * returned future is completed with the reply lines, or with a {@link TimeoutException}
+     * if there's no reply within the channel request timeout.<br>
+     * If the current broker supports native request/reply, the reply is sent directly to this
+     * node, otherwise it's sent to the reply channel of this messenger.
+     *
+     * @param channel the channel name to send the request.
+     * @param lines   the request lines.
+     * @return        a {@link CompletableFuture} that is completed with the reply lines.
+     * @see MessageChannel#respond(ChannelResponder)
+     * @see MessageChannel#requestTimeout(long, TimeUnit)
+     */
+    @NotNull
+    public CompletableFuture<String[]> request(@NotNull String channel, @Nullable Object... lines) {
         if (!isEnabled()) {
             throw new IllegalStateException("The messenger is not enabled");
         }
@@ -214,14 +356,181 @@ public abstract class AbstractMessenger {
         if (messageChannel == null) {
             throw new IllegalStateException("The messaging chanel '" + channel + "' doesn't exist");
         }
-        return CompletableFuture.supplyAsync(() -> {
+        final Broker broker = this.broker;
+        final long id = this.requestIds.incrementAndGet();
+        final CompletableFuture<String[]> future = new CompletableFuture<>();
+        this.requests.put(id, new PendingRequest(messageChannel, future));
+        final TimingWheelExecutor.Timeout timeout = TimingWheelExecutor.SHARED.execute(
+                () -> future.completeExceptionally(new TimeoutException("The request to channel " + channel + " timed out")),
+                messageChannel.getRequestTimeout(),
+                TimeUnit.NANOSECONDS
+        );
+        // Any completion, including user cancellation, must not leave the request pending
+        future.whenComplete((result, error) -> {
+            this.requests.remove(id);
+            timeout.cancel();
+        });
+        this.executor.execute(() -> {
             try {
-                this.broker.send(channel, messageChannel.encode(lines));
-                return null;
-            } catch (IOException e) {
-                throw new CompletionException(e);
+                final ByteBuffer data = messageChannel.encodeRequest(id, this.replyChannel, lines);
+                if (broker.request(channel, data.duplicate())) {
+                    return;
+                }
+                if (!this.channels.containsKey(this.replyChannel)) {
+                    subscribe(this.replyChannel);
+                }
+                // Any reply sent before the broker is subscribed to the reply channel is lost
+                final CompletableFuture<Void> subscription = broker.awaitSubscription(this.replyChannel);
+                if (subscription.isDone()) {
+                    broker.send(channel, data);
+                } else {
+                    subscription.thenRunAsync(() -> sendRequest(broker, channel, data, future), this.executor);
+                }
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
             }
-        }, this.executor);
+        });
+        return future;
+    }
+
+    private static void sendRequest(@NotNull Broker broker, @NotNull String channel, @NotNull ByteBuffer data, @NotNull CompletableFuture<String[]> future) {
+        try {
+            broker.send(channel, data);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+
+    @NotNull
+    private CompletableFuture<Void> send(@NotNull String channel, @NotNull Encoder encoder) {
+        return send(channel, null, encoder);
+    }
+
+    @NotNull
+    private CompletableFuture<Void> send(@NotNull String channel, @Nullable Object[] lines, @NotNull Encoder encoder) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("The messenger is not enabled");
+        }
+        final MessageChannel messageChannel = this.channels.get(channel);
+        if (messageChannel == null) {
+            throw new IllegalStateException("The messaging chanel '" + channel + "' doesn't exist");
+        }
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        this.writers.computeIfAbsent(channel, Writer::new).add(new Outbound(messageChannel, lines, encoder, future));
+        return future;
+    }
+
+    /**
+     * Send every multi-line message that is held by channels with linger time, without waiting
+     * the linger time to pass.
+     *
+     * @return a {@link CompletableFuture} that is completed when all the held messages are sent.
+     * @see MessageChannel#linger(long, TimeUnit)
+     */
+    @NotNull
+    public CompletableFuture<Void> flush() {
+        final List<PendingBatch> batches = drain();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[batches.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = batches.get(i).publish();
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Create a publisher of the messages received from provided channel name, with
+     * {@link Flow#defaultBufferSize()} messages held for each subscriber.
+     *
+     * @param channel the channel name.
+     * @return        a publisher of messages.
+     */
+    @NotNull
+    public ChannelPublisher publisher(@NotNull String channel) {
+        return publisher(channel, Flow.defaultBufferSize());
+    }
+
+    /**
+     * Create a publisher of the messages received from provided channel name.<br>
+     * Every subscription is registered as message consumer on the channel, and
+     * the channel is paused on the broker while any subscriber is slower than the channel.
+     *
+     * @param channel    the channel name.
+     * @param bufferSize the maximum number of messages held for each subscriber before pausing the channel.
+     * @return           a publisher of messages.
+     */
+    @NotNull
+    public ChannelPublisher publisher(@NotNull String channel, int bufferSize) {
+        return new ChannelPublisher(this, channel, bufferSize);
+    }
+
+    /**
+     * Create a publisher of the messages received from provided channel name.<br>
+     * Every subscription is registered as message consumer on the channel, and
+     * the channel is paused on the broker while any subscriber is slower than the channel,
+     * if the broker doesn't support pausing the provided overflow policy is applied instead.
+     *
+     * @param channel    the channel name.
+     * @param bufferSize the maximum number of messages held for each subscriber before pausing the channel.
+     * @param overflow   the policy to apply when a buffer is full and the broker doesn't support pausing.
+     * @return           a publisher of messages.
+     */
+    @NotNull
+    public ChannelPublisher publisher(@NotNull String channel, int bufferSize, @NotNull SerialExecutor.Overflow overflow) {
+        return new ChannelPublisher(this, channel, bufferSize, overflow);
+    }
+
+    /**
+     * Create a subscriber that send every received item as multi-line message into provided
+     * channel name, with {@link Flow#defaultBufferSize()} messages sending at the same time.
+     *
+     * @param channel the channel name.
+     * @return        a subscriber of message lines.
+     */
+    @NotNull
+    public ChannelSubscriber subscriber(@NotNull String channel) {
+        return new ChannelSubscriber(this, channel, Flow.defaultBufferSize());
+    }
+
+    @NotNull
+    private CompletableFuture<Void> coalesce(@NotNull MessageChannel channel, @Nullable Object[] lines) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final PendingBatch batch;
+        final boolean created;
+        final boolean full;
+        synchronized (this.pending) {
+            PendingBatch current = this.pending.get(channel.getName());
+            created = current == null;
+            if (created) {
+                current = new PendingBatch(channel);
+                this.pending.put(channel.getName(), current);
+            }
+            current.add(lines, future);
+            full = current.bytes >= channel.getMaxBatchBytes();
+            if (full) {
+                this.pending.remove(channel.getName());
+            }
+            batch = current;
+        }
+        if (full) {
+            batch.cancel();
+            batch.publish();
+        } else if (created) {
+            batch.schedule();
+        }
+        return future;
+    }
+
+    @NotNull
+    private List<PendingBatch> drain() {
+        final List<PendingBatch> batches;
+        synchronized (this.pending) {
+            batches = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+        }
+        for (PendingBatch batch : batches) {
+            batch.cancel();
+        }
+        return batches;
     }
 
     /**
@@ -229,14 +538,463 @@ public abstract class AbstractMessenger {
      *
      * @param channel the channel name where the data come from.
      * @param src     the byte array to encode as readable message.
-     * @return        true if the provided data was accepted by any message channel.
+     * @return        true if the provided data was accepted by any message channel, or handed to the current dispatcher.
      * @throws IOException if any error occurs in this operation.
      */
     public boolean accept(@NotNull String channel, byte[] src) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(src);
+        if (MessageChannel.isReply(buffer)) {
+            return acceptReply(buffer);
+        }
+        final MessageChannel messageChannel = this.channels.get(channel);
+        if (messageChannel == null) {
+            throw new IllegalStateException("The messaging chanel '" + channel + "' doesn't exist");
+        }
+        if (MessageChannel.isRequest(buffer)) {
+            return acceptRequest(messageChannel, buffer, null);
+        }
+        final Executor dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            return dispatch(dispatcher, messageChannel, ByteBuffer.wrap(src));
+        }
+        return messageChannel.accept(src);
+    }
+
+    /**
+     * Receive provided byte buffer to be encoded as readable multi-line message.
+     *
+     * @param channel the channel name where the data come from.
+     * @param src     the byte buffer to encode as readable message.
+     * @return        true if the provided data was accepted by any message channel, or handed to the current dispatcher.
+     * @throws IOException if any error occurs in this operation.
+     */
+    public boolean accept(@NotNull String channel, @NotNull ByteBuffer src) throws IOException {
+        return accept(channel, src, null);
+    }
+
+    /**
+     * Receive provided byte buffer to be encoded as readable multi-line message, that
+     * can be replied to the provided native reply address if it's a request.
+     *
+     * @param channel the channel name where the data come from.
+     * @param src     the byte buffer to encode as readable message.
+     * @param replyTo the native reply address, null to reply requests into the reply channel of requester.
+     * @return        true if the provided data was accepted by any message channel, or handed to the current dispatcher.
+     * @throws IOException if any error occurs in this operation.
+     */
+    public boolean accept(@NotNull String channel, @NotNull ByteBuffer src, @Nullable String replyTo) throws IOException {
+        // Native replies are not received from any subscribed channel
+        if (MessageChannel.isReply(src)) {
+            return acceptReply(src);
+        }
         final MessageChannel messageChannel = this.channels.get(channel);
         if (messageChannel == null) {
             throw new IllegalStateException("The messaging chanel '" + channel + "' doesn't exist");
         }
+        if (MessageChannel.isRequest(src)) {
+            return acceptRequest(messageChannel, src, replyTo);
+        }
+        final Executor dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            // The broker may reuse the buffer after this method returns
+            final byte[] data = new byte[src.remaining()];
+            src.duplicate().get(data);
+            return dispatch(dispatcher, messageChannel, ByteBuffer.wrap(data));
+        }
         return messageChannel.accept(src);
     }
-}
\ No newline at end of file
+
+    private boolean acceptReply(@NotNull ByteBuffer src) throws IOException {
+        final PendingRequest request = this.requests.remove(MessageChannel.replyId(src));
+        if (request == null) {
+            // Already replied by other node, or timed out
+            return false;
+        }
+        try {
+            final String[] lines = request.channel.decodeReply(src);
+            this.executor.execute(() -> request.future.complete(lines));
+        } catch (IOException e) {
+            this.executor.execute(() -> request.future.completeExceptionally(e));
+        }
+        return true;
+    }
+
+    private boolean acceptRequest(@NotNull MessageChannel channel, @NotNull ByteBuffer src, @Nullable String replyTo) throws IOException {
+        final ChannelResponder responder = channel.getResponder();
+        if (responder == null) {
+            return false;
+        }
+        final MessageChannel.Request request = channel.decodeRequest(src);
+        if (request == null) {
+            return false;
+        }
+        final Executor dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.execute(() -> respond(channel, responder, request, replyTo));
+        } else {
+            respond(channel, responder, request, replyTo);
+        }
+        return true;
+    }
+
+    private void respond(@NotNull MessageChannel channel, @NotNull ChannelResponder responder, @NotNull MessageChannel.Request request, @Nullable String replyTo) {
+        Object[] lines;
+        boolean error = false;
+        try {
+            lines = responder.respond(channel.getName(), request.getLines());
+            if (lines == null) {
+                return;
+            }
+        } catch (Throwable t) {
+            lines = new Object[] { t.getMessage() == null ? t.getClass().getName() : t.getMessage() };
+            error = true;
+        }
+        final Broker broker = getBroker();
+        if (broker == null) {
+            return;
+        }
+        try {
+            final ByteBuffer data = channel.encodeReply(request.getId(), error, lines);
+            if (replyTo != null) {
+                broker.reply(replyTo, data);
+            } else {
+                broker.send(request.getReplyTo(), data);
+            }
+        } catch (Throwable t) {
+            broker.getLogger().log(1, "Cannot reply request from channel " + channel.getName(), t);
+        }
+    }
+
+    private boolean dispatch(@NotNull Executor dispatcher, @NotNull MessageChannel channel, @NotNull ByteBuffer src) throws IOException {
+        final int partitions = channel.getPartitions();
+        final int capacity = Math.max(1, channel.getInboundCapacity() / partitions);
+        final SerialExecutor.Overflow overflow = channel.getOverflow();
+        InboundWorkers inbound = this.dispatchers.get(channel.getName());
+        if (inbound == null || !inbound.matches(dispatcher, partitions, capacity, overflow)) {
+            inbound = this.dispatchers.compute(channel.getName(), (key, current) -> {
+                if (current != null && current.matches(dispatcher, partitions, capacity, overflow)) {
+                    return current;
+                }
+                return new InboundWorkers(dispatcher, partitions, capacity, overflow, current);
+            });
+        }
+        final SerialExecutor[] workers = inbound.workers;
+        if (channel.getPartitionKey() == null) {
+            // Decode the message on worker thread
+            workers[0].execute(() -> deliver(channel, () -> channel.accept(src)));
+            return true;
+        }
+        return channel.accept(src, (key, partition, delivery) -> workers[partition].execute(key, () -> deliver(channel, delivery)));
+    }
+
+    /**
+     * Get the number of received messages from provided channel that are waiting to be consumed by the current dispatcher.
+     *
+     * @param channel the channel name.
+     * @return        a message count.
+     */
+    public long getInboundPending(@NotNull String channel) {
+        long pending = 0;
+        final InboundWorkers inbound = this.dispatchers.get(channel);
+        if (inbound != null) {
+            for (SerialExecutor worker : inbound.workers) {
+                pending += worker.getPending();
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Get the number of received messages from provided channel that were discarded or replaced
+     * by the channel overflow policy.
+     *
+     * @param channel the channel name.
+     * @return        a message count.
+     */
+    public long getInboundDropped(@NotNull String channel) {
+        long dropped = 0;
+        final InboundWorkers inbound = this.dispatchers.get(channel);
+        if (inbound != null) {
+            for (SerialExecutor worker : inbound.workers) {
+                dropped += worker.getDropped() + worker.getConflated();
+            }
+        }
+        return dropped;
+    }
+
+    private void deliver(@NotNull MessageChannel channel, @NotNull MessageChannel.Delivery delivery) {
+        try {
+            delivery.deliver();
+        } catch (Throwable t) {
+            final Broker broker = getBroker();
+            if (broker != null) {
+                broker.getLogger().log(1, "Cannot process received message from channel " + channel.getName(), t);
+            }
+        }
+    }
+
+    private static final class InboundWorkers {
+
+        private final Executor dispatcher;
+        private final int capacity;
+        private final SerialExecutor.Overflow overflow;
+        private final SerialExecutor[] workers;
+
+        InboundWorkers(@NotNull Executor dispatcher, int partitions, int capacity, @NotNull SerialExecutor.Overflow overflow, @Nullable InboundWorkers previous) {
+            this.dispatcher = dispatcher;
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.workers = new SerialExecutor[partitions];
+            final Executor executor;
+            if (previous == null) {
+                executor = dispatcher;
+            } else {
+                // Keep the received order, the new workers start once the previous ones run every pending message
+                final CompletableFuture<?>[] drained = new CompletableFuture<?>[previous.workers.length];
+                for (int i = 0; i < drained.length; i++) {
+                    drained[i] = previous.workers[i].drained();
+                }
+                final CompletableFuture<Void> gate = CompletableFuture.allOf(drained);
+                executor = command -> {
+                    if (gate.isDone()) {
+                        dispatcher.execute(command);
+                    } else {
+                        gate.thenRun(() -> dispatcher.execute(command));
+                    }
+                };
+            }
+            for (int i = 0; i < partitions; i++) {
+                this.workers[i] = new SerialExecutor(executor, capacity, overflow);
+            }
+        }
+
+        boolean matches(@NotNull Executor dispatcher, int partitions, int capacity, @NotNull SerialExecutor.Overflow overflow) {
+            return this.dispatcher == dispatcher && this.workers.length == partitions && this.capacity == capacity && this.overflow == overflow;
+        }
+    }
+
+    private static final class PendingRequest {
+
+        private final MessageChannel channel;
+        private final CompletableFuture<String[]> future;
+
+        PendingRequest(@NotNull MessageChannel channel, @NotNull CompletableFuture<String[]> future) {
+            this.channel = channel;
+            this.future = future;
+        }
+    }
+
+    private final class PendingBatch {
+
+        private final MessageChannel channel;
+        private final List<Object[]> messages = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private int bytes;
+        private volatile Object task;
+
+        PendingBatch(@NotNull MessageChannel channel) {
+            this.channel = channel;
+        }
+
+        void add(@Nullable Object[] lines, @NotNull CompletableFuture<Void> future) {
+            this.messages.add(lines);
+            this.futures.add(future);
+            this.bytes += estimate(lines);
+        }
+
+        void schedule() {
+            this.task = getBroker().getExecutor().execute(() -> {
+                synchronized (pending) {
+                    if (pending.get(this.channel.getName()) != this) {
+                        return;
+                    }
+                    pending.remove(this.channel.getName());
+                }
+                publish();
+            }, this.channel.getLinger(), TimeUnit.NANOSECONDS);
+        }
+
+        void cancel() {
+            final Object task = this.task;
+            if (task != null) {
+                this.task = null;
+                getBroker().getExecutor().cancel(task);
+            }
+        }
+
+        @NotNull
+        CompletableFuture<Void> publish() {
+            final CompletableFuture<Void> published = new CompletableFuture<>();
+            published.whenComplete((result, error) -> {
+                for (CompletableFuture<Void> future : this.futures) {
+                    if (error == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(error);
+                    }
+                }
+            });
+            // Written by the channel writer to keep the order with any other message
+            writers.computeIfAbsent(this.channel.getName(), Writer::new).add(new Outbound(this.channel, null, this::encode, published));
+            return published;
+        }
+
+        @NotNull
+        private ByteBuffer encode(@NotNull MessageChannel channel) throws IOException {
+            if (this.messages.size() == 1) {
+                return channel.encodeBuffer(this.messages.get(0));
+            }
+            return channel.encodeBatch(this.messages);
+        }
+
+    }
+
+    private static int estimate(@Nullable Object[] lines) {
+        int size = 1;
+        if (lines == null) {
+            return size;
+        }
+        for (Object line : lines) {
+            if (line instanceof CharSequence) {
+                size += 2 + ((CharSequence) line).length();
+            } else if (line instanceof byte[]) {
+                size += 2 + ((byte[]) line).length;
+            } else {
+                size += 9;
+            }
+        }
+        return size;
+    }
+
+    private static final class Outbound {
+
+        private final MessageChannel channel;
+        private final Object[] lines;
+        private final Encoder encoder;
+        private final CompletableFuture<Void> future;
+
+        Outbound(@NotNull MessageChannel channel, @Nullable Object[] lines, @NotNull Encoder encoder, @NotNull CompletableFuture<Void> future) {
+            this.channel = channel;
+            this.lines = lines;
+            this.encoder = encoder;
+            this.future = future;
+        }
+
+        boolean isBatchable() {
+            return this.lines != null && this.channel.isAutoBatch();
+        }
+    }
+
+    // Outbound pipeline of a channel: many threads add messages, and only one drain
+    // at a time encodes and sends them in the same order
+    private final class Writer {
+
+        private static final int MAX_DRAIN = 256;
+
+        private final String channel;
+        private final Queue<Outbound> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final ReentrantLock lock = new ReentrantLock();
+
+        Writer(@NotNull String channel) {
+            this.channel = channel;
+        }
+
+        void add(@NotNull Outbound outbound) {
+            this.queue.add(outbound);
+            schedule();
+        }
+
+        private void schedule() {
+            if (this.running.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (Throwable t) {
+                    this.running.set(false);
+                    Outbound outbound;
+                    while ((outbound = this.queue.poll()) != null) {
+                        outbound.future.completeExceptionally(t);
+                    }
+                }
+            }
+        }
+
+        void flush() {
+            // Write every waiting message on the current thread, after any running drain
+            this.lock.lock();
+            try {
+                Outbound outbound;
+                while ((outbound = this.queue.poll()) != null) {
+                    write(outbound);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void drain() {
+            try {
+                this.lock.lock();
+                try {
+                    int count = 0;
+                    Outbound outbound;
+                    while (count < MAX_DRAIN && (outbound = this.queue.poll()) != null) {
+                        count += write(outbound);
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+            } finally {
+                this.running.set(false);
+            }
+            // Any message added while the drain was finishing must be sent
+            if (!this.queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private int write(@NotNull Outbound first) {
+            final Outbound peek = this.queue.peek();
+            if (!first.isBatchable() || peek == null || !peek.isBatchable() || peek.channel != first.channel) {
+                try {
+                    getBroker().send(this.channel, first.encoder.encode(first.channel));
+                    first.future.complete(null);
+                } catch (Throwable t) {
+                    first.future.completeExceptionally(t);
+                }
+                return 1;
+            }
+            // Send every waiting multi-line message together
+            final List<Outbound> batch = new ArrayList<>();
+            batch.add(first);
+            int bytes = estimate(first.lines);
+            Outbound next;
+            while (bytes < first.channel.getMaxBatchBytes() && (next = this.queue.peek()) != null && next.isBatchable() && next.channel == first.channel) {
+                this.queue.poll();
+                batch.add(next);
+                bytes += estimate(next.lines);
+            }
+            final List<Object[]> messages = new ArrayList<>(batch.size());
+            for (Outbound outbound : batch) {
+                messages.add(outbound.lines);
+            }
+            try {
+                getBroker().send(this.channel, first.channel.encodeBatch(messages));
+                for (Outbound outbound : batch) {
+                    outbound.future.complete(null);
+                }
+            } catch (Throwable t) {
+                for (Outbound outbound : batch) {
+                    outbound.future.completeExceptionally(t);
+                }
+            }
+            return batch.size();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        @NotNull
+        ByteBuffer encode(@NotNull MessageChannel channel) throws IOException;
+    }
+}
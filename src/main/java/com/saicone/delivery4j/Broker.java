@@ -1,12 +1,24 @@
 package com.saicone.delivery4j;
 
+import com.saicone.delivery4j.util.Buffers;
 import com.saicone.delivery4j.util.ByteCodec;
 import com.saicone.delivery4j.util.DelayedExecutor;
+import com.saicone.delivery4j.util.FragmentAssembler;
+import com.saicone.delivery4j.util.ScheduledDelayedExecutor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -21,12 +33,24 @@ import java.util.logging.Level;
  */
 public abstract class Broker {
 
+    // Fragments use the same frame header from message channels: [magic][type][flags]
+    private static final byte FRAGMENT_MAGIC = (byte) 0xD4;
+    private static final byte FRAGMENT_TYPE = (byte) 0x7F;
+    private static final int FRAGMENT_HEADER_SIZE = 3 + 8 + 5 + 5;
+    private static final int FRAGMENT_MIN_SIZE = 3 + 8 + 1 + 1;
+
     private ChannelConsumer<byte[]> consumer = (channel, data) -> {};
+    private ChannelConsumer<ByteBuffer> bufferConsumer = null;
+    private RequestConsumer requestConsumer = null;
     private ByteCodec<String> codec = ByteCodec.BASE64;
-    private DelayedExecutor<?> executor = DelayedExecutor.JAVA;
+    private DelayedExecutor<?> executor = ScheduledDelayedExecutor.SHARED;
     private Logger logger = Logger.of(this.getClass());
+    private int maxPayloadSize = 0;
+    private FragmentAssembler assembler = new FragmentAssembler(1024, 64L * 1024 * 1024, 30, TimeUnit.SECONDS);
 
-    private final Set<String> subscribedChannels = new HashSet<>();
+    private final Set<String> subscribedChannels = ConcurrentHashMap.newKeySet();
+    private final Set<String> pausedChannels = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<Void>> subscriptions = new ConcurrentHashMap<>();
     private boolean enabled = false;
 
     /**
@@ -57,6 +81,49 @@ public abstract class Broker {
     protected void onUnsubscribe(@NotNull String... channels) {
     }
 
+    /**
+     * Check if the current broker subscribes to channels asynchronously, so any subscription
+     * is only effective once it's confirmed with {@link #subscribed(String...)}.<br>
+     * By default, brokers subscribe synchronously and this method return false.
+     *
+     * @return true if subscriptions are confirmed asynchronously, false otherwise.
+     */
+    protected boolean isAsyncSubscribe() {
+        return false;
+    }
+
+    /**
+     * Confirm the subscription to provided channels.<br>
+     * Brokers that subscribe asynchronously must call this method once they are able
+     * to receive messages from the channels.
+     *
+     * @param channels the channels name.
+     */
+    protected void subscribed(@NotNull String... channels) {
+        for (String channel : channels) {
+            this.subscriptions.computeIfAbsent(channel, key -> new CompletableFuture<>()).complete(null);
+        }
+    }
+
+    /**
+     * Method to run when broker is being paused from receiving messages of provided channel.<br>
+     * By default, brokers doesn't support pausing and this method return false.
+     *
+     * @param channel the channel name.
+     * @return        true if the channel will be paused, false if pausing is not supported.
+     */
+    protected boolean onPause(@NotNull String channel) {
+        return false;
+    }
+
+    /**
+     * Method to run when broker is being resumed to receive messages of provided channel.
+     *
+     * @param channel the channel name.
+     */
+    protected void onResume(@NotNull String channel) {
+    }
+
     /**
      * Method to run when byte data is being sent to broker.
      *
@@ -67,7 +134,49 @@ public abstract class Broker {
     protected abstract void onSend(@NotNull String channel, byte[] data) throws IOException;
 
     /**
-     * Method to run when byte data was received from broker.
+     * Method to run when byte buffer is being sent to broker.<br>
+     * By default, the remaining buffer bytes are sent as byte array, any
+     * buffer backed by an array with the exact data size is sent without copy.
+     *
+     * @param channel the channel name.
+     * @param data    the byte buffer data to send.
+     * @throws IOException if any error occurs while sending the data.
+     */
+    protected void onSend(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        onSend(channel, Buffers.toArray(data));
+    }
+
+    /**
+     * Method to run when a request is being sent to broker using a native reply address.<br>
+     * Brokers that support request/reply must receive any request with
+     * {@link #receive(String, ByteBuffer, String)} providing the native reply address,
+     * and receive the replies sent to the address of this broker as regular data.<br>
+     * By default, brokers doesn't support native requests and this method return false.
+     *
+     * @param channel the channel name.
+     * @param data    the request data to send.
+     * @return        true if the request was sent, false if native requests are not supported.
+     * @throws IOException if any error occurs while sending the data.
+     */
+    protected boolean onRequest(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        return false;
+    }
+
+    /**
+     * Method to run when a reply is being sent to a native reply address.<br>
+     * By default, the reply address is used as channel name.
+     *
+     * @param replyTo the native reply address.
+     * @param data    the reply data to send.
+     * @throws IOException if any error occurs while sending the data.
+     */
+    protected void onReply(@NotNull String replyTo, @NotNull ByteBuffer data) throws IOException {
+        onSend(replyTo, data);
+    }
+
+    /**
+     * Method to run when byte data was received from broker.<br>
+     * By default, this method is called by {@link #onReceive(String, ByteBuffer)} with any received data.
      *
      * @param channel the channel name.
      * @param data    the received byte array data.
@@ -76,6 +185,19 @@ public abstract class Broker {
     protected void onReceive(@NotNull String channel, byte[] data) throws IOException {
     }
 
+    /**
+     * Method to run when byte buffer was received from broker.<br>
+     * By default, the remaining buffer bytes are received as byte array, any
+     * buffer backed by an array with the exact data size is received without copy.
+     *
+     * @param channel the channel name.
+     * @param data    the received byte buffer data.
+     * @throws IOException if any error occurs while receiving the data.
+     */
+    protected void onReceive(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        onReceive(channel, Buffers.toArray(data));
+    }
+
     /**
      * Get the current channel consumer.
      *
@@ -86,6 +208,26 @@ public abstract class Broker {
         return consumer;
     }
 
+    /**
+     * Get the current channel buffer consumer.
+     *
+     * @return a channel consumer that accept a channel name with byte buffer data, null if buffers are consumed as byte arrays.
+     */
+    @Nullable
+    public ChannelConsumer<ByteBuffer> getBufferConsumer() {
+        return bufferConsumer;
+    }
+
+    /**
+     * Get the current request consumer.
+     *
+     * @return a request consumer that accept received data with a native reply address, null if the address is ignored.
+     */
+    @Nullable
+    public RequestConsumer getRequestConsumer() {
+        return requestConsumer;
+    }
+
     /**
      * Get the current byte codec.
      *
@@ -117,6 +259,25 @@ public abstract class Broker {
         return logger;
     }
 
+    /**
+     * Get the maximum payload size that can be sent at once by this broker.
+     *
+     * @return a size in bytes, 0 if there's no limit.
+     */
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    /**
+     * Get the current fragment assembler.
+     *
+     * @return a fragment assembler that reassemble received fragments.
+     */
+    @NotNull
+    public FragmentAssembler getAssembler() {
+        return assembler;
+    }
+
     /**
      * Get the subscribed channels.
      *
@@ -145,6 +306,28 @@ public abstract class Broker {
         this.consumer = consumer;
     }
 
+    /**
+     * Replace the current channel buffer consumer.<br>
+     * If no buffer consumer is set, any received buffer will be converted
+     * to byte array and accepted by the regular channel consumer.
+     *
+     * @param bufferConsumer the channel buffer consumer to set.
+     */
+    public void setBufferConsumer(@Nullable ChannelConsumer<ByteBuffer> bufferConsumer) {
+        this.bufferConsumer = bufferConsumer;
+    }
+
+    /**
+     * Replace the current request consumer.<br>
+     * If no request consumer is set, any received data with a native reply address
+     * will be accepted by the regular consumers.
+     *
+     * @param requestConsumer the request consumer to set.
+     */
+    public void setRequestConsumer(@Nullable RequestConsumer requestConsumer) {
+        this.requestConsumer = requestConsumer;
+    }
+
     /**
      * Replace the current byte codec.
      *
@@ -172,6 +355,30 @@ public abstract class Broker {
         this.logger = logger;
     }
 
+    /**
+     * Replace the maximum payload size that can be sent at once by this broker.<br>
+     * Any data bigger than this size is split into numbered fragments, that are
+     * reassembled on receive before being consumed.<br>
+     * The size is measured before any codec conversion.
+     *
+     * @param maxPayloadSize the maximum size in bytes, 0 to disable fragmentation.
+     */
+    public void setMaxPayloadSize(int maxPayloadSize) {
+        if (maxPayloadSize > 0 && maxPayloadSize <= FRAGMENT_HEADER_SIZE) {
+            throw new IllegalArgumentException("The max payload size must be bigger than " + FRAGMENT_HEADER_SIZE + " bytes");
+        }
+        this.maxPayloadSize = Math.max(0, maxPayloadSize);
+    }
+
+    /**
+     * Replace the current fragment assembler.
+     *
+     * @param assembler the fragment assembler to set.
+     */
+    public void setAssembler(@NotNull FragmentAssembler assembler) {
+        this.assembler = assembler;
+    }
+
     /**
      * Set broker status.
      *
@@ -197,6 +404,8 @@ public abstract class Broker {
             setEnabled(false);
             onClose();
         }
+        // Confirmed subscriptions must be confirmed again by the next connection
+        this.subscriptions.values().removeIf(CompletableFuture::isDone);
     }
 
     /**
@@ -244,10 +453,70 @@ public abstract class Broker {
         if (list.isEmpty()) {
             return false;
         }
+        for (String channel : list) {
+            final CompletableFuture<Void> subscription = this.subscriptions.get(channel);
+            if (subscription != null && subscription.isDone()) {
+                this.subscriptions.remove(channel, subscription);
+            }
+        }
         onUnsubscribe(list.toArray(new String[0]));
         return true;
     }
 
+    /**
+     * Get a future that is completed once the broker is able to receive messages from provided channel.<br>
+     * If the current broker subscribes synchronously, the returned future is already completed.
+     *
+     * @param channel the channel name.
+     * @return        a {@link CompletableFuture} that is completed when the channel subscription is effective.
+     */
+    @NotNull
+    public CompletableFuture<Void> awaitSubscription(@NotNull String channel) {
+        if (!isAsyncSubscribe()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.subscriptions.computeIfAbsent(channel, key -> new CompletableFuture<>());
+    }
+
+    /**
+     * Pause the delivery of messages from provided channel, if it's supported by the current broker.<br>
+     * Messages that were already fetched by the broker may still be received after this call.
+     *
+     * @param channel the channel name.
+     * @return        true if the channel is paused, false if it's not subscribed or the broker doesn't support pausing.
+     */
+    public boolean pause(@NotNull String channel) {
+        if (this.pausedChannels.contains(channel)) {
+            return true;
+        }
+        if (!this.subscribedChannels.contains(channel) || !onPause(channel)) {
+            return false;
+        }
+        this.pausedChannels.add(channel);
+        return true;
+    }
+
+    /**
+     * Resume the delivery of messages from provided channel.
+     *
+     * @param channel the channel name.
+     */
+    public void resume(@NotNull String channel) {
+        if (this.pausedChannels.remove(channel)) {
+            onResume(channel);
+        }
+    }
+
+    /**
+     * Get the channels that are currently paused.
+     *
+     * @return a set of channel names.
+     */
+    @NotNull
+    public Set<String> getPausedChannels() {
+        return pausedChannels;
+    }
+
     /**
      * Send byte data array to provided channel.
      *
@@ -256,7 +525,81 @@ public abstract class Broker {
      * @throws IOException if anny error occurs while sending the data.
      */
     public void send(@NotNull String channel, byte[] data) throws IOException {
-        onSend(channel, data);
+        if (this.maxPayloadSize > 0 && data.length > this.maxPayloadSize) {
+            sendFragments(channel, ByteBuffer.wrap(data));
+        } else {
+            onSend(channel, data);
+        }
+    }
+
+    /**
+     * Send byte buffer to provided channel.<br>
+     * The remaining bytes of the buffer are sent.
+     *
+     * @param channel the channel name.
+     * @param data    the data to send.
+     * @throws IOException if anny error occurs while sending the data.
+     */
+    public void send(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        if (this.maxPayloadSize > 0 && data.remaining() > this.maxPayloadSize) {
+            sendFragments(channel, data);
+        } else {
+            onSend(channel, data);
+        }
+    }
+
+    /**
+     * Send a request to provided channel using a native reply address, if it's supported by the current broker.<br>
+     * Requests bigger than the maximum payload size are never sent, since fragments doesn't keep the reply address.
+     *
+     * @param channel the channel name.
+     * @param data    the request to send.
+     * @return        true if the request was sent, false if it must be sent as regular data.
+     * @throws IOException if any error occurs while sending the data.
+     */
+    public boolean request(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        if (this.maxPayloadSize > 0 && data.remaining() > this.maxPayloadSize) {
+            return false;
+        }
+        return onRequest(channel, data);
+    }
+
+    /**
+     * Send a reply to provided native reply address.
+     *
+     * @param replyTo the native reply address.
+     * @param data    the reply to send.
+     * @throws IOException if any error occurs while sending the data.
+     */
+    public void reply(@NotNull String replyTo, @NotNull ByteBuffer data) throws IOException {
+        onReply(replyTo, data);
+    }
+
+    private void sendFragments(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        final int chunkSize = this.maxPayloadSize - FRAGMENT_HEADER_SIZE;
+        final int count = (data.remaining() + chunkSize - 1) / chunkSize;
+        final long id = ThreadLocalRandom.current().nextLong();
+        final ByteBuffer src = data.duplicate();
+        for (int index = 0; index < count; index++) {
+            final int length = Math.min(chunkSize, src.remaining());
+            final ByteBuffer fragment = ByteBuffer.allocate(FRAGMENT_HEADER_SIZE + length);
+            fragment.put(FRAGMENT_MAGIC).put(FRAGMENT_TYPE).put((byte) 0).putLong(id);
+            putVarInt(fragment, index);
+            putVarInt(fragment, count);
+            final int limit = src.limit();
+            src.limit(src.position() + length);
+            fragment.put(src);
+            src.limit(limit);
+            onSend(channel, fragment.flip());
+        }
+    }
+
+    private static void putVarInt(@NotNull ByteBuffer buffer, int i) {
+        while ((i & ~0x7F) != 0) {
+            buffer.put((byte) ((i & 0x7F) | 0x80));
+            i >>>= 7;
+        }
+        buffer.put((byte) i);
     }
 
     /**
@@ -267,10 +610,85 @@ public abstract class Broker {
      * @throws IOException if any error occurs while receiving the data.
      */
     public void receive(@NotNull String channel, byte[] data) throws IOException {
+        if (isFragment(ByteBuffer.wrap(data))) {
+            receive(channel, ByteBuffer.wrap(data));
+            return;
+        }
         getConsumer().accept(channel, data);
+        onReceive(channel, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Receive byte buffer from provided channel.<br>
+     * The buffer is handed to the current buffer consumer without copy, if exists.<br>
+     * Any received fragment is kept by the current assembler until the whole data can be consumed.
+     *
+     * @param channel the channel name.
+     * @param data    the data to receive.
+     * @throws IOException if any error occurs while receiving the data.
+     */
+    public void receive(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+        if (isFragment(data)) {
+            try {
+                final ByteBuffer src = data.duplicate();
+                src.position(src.position() + 3);
+                final long id = src.getLong();
+                final int index = Buffers.readVarInt(src);
+                final int count = Buffers.readVarInt(src);
+                data = this.assembler.add(channel, id, index, count, src);
+            } catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+            if (data == null) {
+                return;
+            }
+        }
+        if (this.bufferConsumer == null) {
+            getConsumer().accept(channel, Buffers.toArray(data));
+        } else {
+            this.bufferConsumer.accept(channel, data.duplicate());
+        }
+        onReceive(channel, data);
+    }
+
+    /**
+     * Receive byte buffer from provided channel, that can be replied to the provided native reply address.
+     *
+     * @param channel the channel name.
+     * @param data    the data to receive.
+     * @param replyTo the native reply address, null if the data cannot be replied.
+     * @throws IOException if any error occurs while receiving the data.
+     */
+    public void receive(@NotNull String channel, @NotNull ByteBuffer data, @Nullable String replyTo) throws IOException {
+        if (replyTo == null || this.requestConsumer == null || isFragment(data)) {
+            receive(channel, data);
+            return;
+        }
+        this.requestConsumer.accept(channel, data.duplicate(), replyTo);
         onReceive(channel, data);
     }
 
+    private static boolean isFragment(@NotNull ByteBuffer data) {
+        return data.remaining() >= FRAGMENT_MIN_SIZE && data.get(data.position()) == FRAGMENT_MAGIC && data.get(data.position() + 1) == FRAGMENT_TYPE;
+    }
+
+    /**
+     * Represents an operation that accept received data that can be replied to a native reply address.
+     */
+    @FunctionalInterface
+    public interface RequestConsumer {
+
+        /**
+         * Performs this operation with the given channel name, data and reply address.
+         *
+         * @param channel the channel name.
+         * @param data    the received data.
+         * @param replyTo the native reply address.
+         * @throws IOException if any error occurs during this operation.
+         */
+        void accept(@NotNull String channel, @NotNull ByteBuffer data, @NotNull String replyTo) throws IOException;
+    }
+
     /**
      * Logger interface to print messages about broker operations and exceptions.<br>
      * Unlike normal logger implementations, this one uses numbers as levels:<br>
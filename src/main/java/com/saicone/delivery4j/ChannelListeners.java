@@ -0,0 +1,147 @@
+package com.saicone.delivery4j;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Registry of channel consumers that are executed in order by a single loop.<br>
+ * The consumers are stored in a copy-on-write array, so any consumer can be added or
+ * removed while messages are being dispatched, and every consumer is executed even
+ * if a previous one throws an exception.
+ *
+ * @author Rubenicos
+ *
+ * @param <T> the type of data produced by the channel.
+ */
+public class ChannelListeners<T> implements ChannelConsumer<T> {
+
+    private static final ChannelConsumer<?>[] EMPTY = new ChannelConsumer<?>[0];
+
+    private volatile ChannelConsumer<?>[] listeners = EMPTY;
+
+    /**
+     * Check if this registry doesn't have any consumer.
+     *
+     * @return true if there's no consumer.
+     */
+    public boolean isEmpty() {
+        return this.listeners.length == 0;
+    }
+
+    /**
+     * Get the number of consumers in this registry.
+     *
+     * @return a consumer count.
+     */
+    public int size() {
+        return this.listeners.length;
+    }
+
+    /**
+     * Add the provided consumer at the end of this registry.
+     *
+     * @param consumer the consumer to add.
+     * @return         a registration that can be used to remove the consumer.
+     */
+    @NotNull
+    public synchronized Registration add(@NotNull ChannelConsumer<? super T> consumer) {
+        final ChannelConsumer<?>[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = consumer;
+        this.listeners = listeners;
+        return () -> remove(consumer);
+    }
+
+    /**
+     * Add the provided consumer at the start of this registry.
+     *
+     * @param consumer the consumer to add.
+     * @return         a registration that can be used to remove the consumer.
+     */
+    @NotNull
+    public synchronized Registration addFirst(@NotNull ChannelConsumer<? super T> consumer) {
+        final ChannelConsumer<?>[] listeners = new ChannelConsumer<?>[this.listeners.length + 1];
+        listeners[0] = consumer;
+        System.arraycopy(this.listeners, 0, listeners, 1, this.listeners.length);
+        this.listeners = listeners;
+        return () -> remove(consumer);
+    }
+
+    /**
+     * Remove the first occurrence of provided consumer from this registry.
+     *
+     * @param consumer the consumer to remove.
+     * @return         true if the consumer was removed, false otherwise.
+     */
+    public synchronized boolean remove(@NotNull ChannelConsumer<?> consumer) {
+        final ChannelConsumer<?>[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == consumer) {
+                final ChannelConsumer<?>[] copy = new ChannelConsumer<?>[listeners.length - 1];
+                System.arraycopy(listeners, 0, copy, 0, i);
+                System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+                this.listeners = copy;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove every consumer from this registry.
+     */
+    public synchronized void clear() {
+        this.listeners = EMPTY;
+    }
+
+    /**
+     * Execute every consumer with the provided channel name and data.<br>
+     * If any consumer throws an exception, the remaining consumers are executed anyway
+     * and the first exception is thrown after, with any other exception as suppressed.
+     *
+     * @param channel the channel name.
+     * @param src     the data to be processed.
+     * @throws IOException if any consumer throws an exception.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void accept(@NotNull String channel, @NotNull T src) throws IOException {
+        Throwable error = null;
+        for (ChannelConsumer<?> listener : this.listeners) {
+            try {
+                ((ChannelConsumer<T>) listener).accept(channel, src);
+            } catch (Throwable t) {
+                if (error == null) {
+                    error = t;
+                } else {
+                    error.addSuppressed(t);
+                }
+            }
+        }
+        if (error != null) {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new IOException(error);
+        }
+    }
+
+    /**
+     * A consumer registration that can be removed from its registry.
+     */
+    @FunctionalInterface
+    public interface Registration {
+
+        /**
+         * Remove the consumer from its registry.
+         *
+         * @return true if the consumer was removed, false if it was already removed.
+         */
+        boolean remove();
+    }
+}
@@ -0,0 +1,320 @@
+package com.saicone.delivery4j;
+
+import com.saicone.delivery4j.util.SerialExecutor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publisher of the messages received from a channel, that respect the demand of its subscribers.<br>
+ * Every subscriber gets its own buffer of messages, once the buffer is full the channel is paused on
+ * the broker until the subscriber consumes half of the buffer. If the broker doesn't support pausing,
+ * the {@link SerialExecutor.Overflow} policy is applied instead, by default the oldest message is
+ * discarded, since blocking the thread that deliver the messages may stall every channel of the broker.<br>
+ * Since a channel never ends, subscribers are never completed.
+ *
+ * @author Rubenicos
+ */
+public class ChannelPublisher implements Flow.Publisher<Message> {
+
+    private final AbstractMessenger messenger;
+    private final String channel;
+    private final int bufferSize;
+    private final SerialExecutor.Overflow overflow;
+
+    private final LongAdder dropped = new LongAdder();
+    private int paused;
+
+    /**
+     * Constructs a channel publisher that discard the oldest message of a full buffer
+     * if the broker doesn't support pausing.
+     *
+     * @param messenger  the messenger that receive the messages.
+     * @param channel    the channel name.
+     * @param bufferSize the maximum number of messages held for each subscriber before pausing the channel.
+     */
+    public ChannelPublisher(@NotNull AbstractMessenger messenger, @NotNull String channel, int bufferSize) {
+        this(messenger, channel, bufferSize, SerialExecutor.Overflow.DROP_OLDEST);
+    }
+
+    /**
+     * Constructs a channel publisher.
+     *
+     * @param messenger  the messenger that receive the messages.
+     * @param channel    the channel name.
+     * @param bufferSize the maximum number of messages held for each subscriber before pausing the channel.
+     * @param overflow   the policy to apply when a buffer is full and the broker doesn't support pausing.
+     */
+    public ChannelPublisher(@NotNull AbstractMessenger messenger, @NotNull String channel, int bufferSize, @NotNull SerialExecutor.Overflow overflow) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer size must be positive");
+        }
+        if (overflow == SerialExecutor.Overflow.CONFLATE) {
+            throw new IllegalArgumentException("The overflow policy " + overflow + " is not supported by channel publishers");
+        }
+        this.messenger = messenger;
+        this.channel = channel;
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Get the channel name.
+     *
+     * @return a channel name.
+     */
+    @NotNull
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * Get the maximum number of messages held for each subscriber before pausing the channel.
+     *
+     * @return a message count.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get the policy that is applied when a buffer is full and the broker doesn't support pausing.
+     *
+     * @return an overflow policy.
+     */
+    @NotNull
+    public SerialExecutor.Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Get the number of messages that were discarded by the overflow policy, across every subscriber.
+     *
+     * @return a message count.
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        Objects.requireNonNull(subscriber, "The subscriber cannot be null");
+        final MessageChannel messageChannel = this.messenger.subscribe(this.channel);
+        final ChannelSubscription subscription = new ChannelSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.register(messageChannel.getMessageListeners());
+    }
+
+    private synchronized boolean pause() {
+        if (this.paused > 0) {
+            this.paused++;
+            return true;
+        }
+        final Broker broker = this.messenger.getBroker();
+        if (broker == null || !broker.pause(this.channel)) {
+            return false;
+        }
+        this.paused++;
+        return true;
+    }
+
+    private synchronized void resume() {
+        if (--this.paused == 0) {
+            final Broker broker = this.messenger.getBroker();
+            if (broker != null) {
+                broker.resume(this.channel);
+            }
+        }
+    }
+
+    private final class ChannelSubscription implements Flow.Subscription, ChannelConsumer<Message> {
+
+        private final Flow.Subscriber<? super Message> subscriber;
+
+        private final ArrayDeque<Message> buffer = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private boolean paused;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private volatile ChannelListeners.Registration registration;
+
+        ChannelSubscription(@NotNull Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void register(@NotNull ChannelListeners<Message> listeners) {
+            this.registration = listeners.add(this);
+            if (this.cancelled) {
+                this.registration.remove();
+            }
+        }
+
+        @Override
+        public void accept(@NotNull String channel, @NotNull Message message) {
+            if (this.cancelled) {
+                return;
+            }
+            // The message may be a view over a buffer that is reused after this method returns
+            final Message copy = message.copy();
+            this.lock.lock();
+            try {
+                if (!this.paused && this.buffer.size() >= bufferSize) {
+                    if (overflow == SerialExecutor.Overflow.DROP_NEWEST) {
+                        dropped.increment();
+                        return;
+                    } else if (overflow == SerialExecutor.Overflow.DROP_OLDEST) {
+                        this.buffer.poll();
+                        dropped.increment();
+                    }
+                }
+                this.buffer.add(copy);
+                if (!this.paused && this.buffer.size() >= bufferSize) {
+                    this.paused = pause();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            drain();
+            if (overflow != SerialExecutor.Overflow.BLOCK) {
+                return;
+            }
+            this.lock.lock();
+            try {
+                while (!this.paused && !this.cancelled && this.buffer.size() >= bufferSize) {
+                    try {
+                        this.notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("The requested amount must be positive, got " + n);
+                cancel();
+                drain();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = this.demand.get();
+                if (current == Long.MAX_VALUE) {
+                    break;
+                }
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!this.demand.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (this.cancelled) {
+                return;
+            }
+            this.cancelled = true;
+            final ChannelListeners.Registration registration = this.registration;
+            if (registration != null) {
+                registration.remove();
+            }
+            final boolean resume;
+            this.lock.lock();
+            try {
+                this.buffer.clear();
+                resume = this.paused;
+                this.paused = false;
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+            if (resume) {
+                resume();
+            }
+        }
+
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                final long requested = this.demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (this.cancelled) {
+                        terminate();
+                        return;
+                    }
+                    final Message message;
+                    boolean resume = false;
+                    this.lock.lock();
+                    try {
+                        message = this.buffer.poll();
+                        if (message != null) {
+                            this.notFull.signal();
+                            if (this.paused && this.buffer.size() <= bufferSize / 2) {
+                                this.paused = false;
+                                resume = true;
+                            }
+                        }
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    if (message == null) {
+                        break;
+                    }
+                    if (resume) {
+                        resume();
+                    }
+                    try {
+                        this.subscriber.onNext(message);
+                    } catch (Throwable t) {
+                        cancel();
+                        final Broker broker = messenger.getBroker();
+                        if (broker != null) {
+                            broker.getLogger().log(1, "Cannot deliver message from channel " + channel, t);
+                        }
+                        return;
+                    }
+                    emitted++;
+                }
+                if (this.cancelled) {
+                    terminate();
+                    return;
+                }
+                if (emitted > 0 && requested != Long.MAX_VALUE) {
+                    this.demand.addAndGet(-emitted);
+                }
+                missed = this.wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            final Throwable error = this.error;
+            if (error != null) {
+                this.error = null;
+                this.subscriber.onError(error);
+            }
+        }
+    }
+}
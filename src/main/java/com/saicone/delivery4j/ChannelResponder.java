@@ -0,0 +1,28 @@
+package com.saicone.delivery4j;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Represents a function that accept a channel name with the lines of a received request,
+ * and produces the lines to reply it.<br>
+ * If this function throws an exception, the request is replied with the exception message as error.
+ *
+ * @author Rubenicos
+ */
+@FunctionalInterface
+public interface ChannelResponder {
+
+    /**
+     * Produces the reply of the given request.
+     *
+     * @param channel the channel name.
+     * @param lines   the request lines.
+     * @return        the reply lines, null to not reply the request.
+     * @throws IOException if any error occurs during this operation.
+     */
+    @Nullable
+    Object[] respond(@NotNull String channel, @NotNull String[] lines) throws IOException;
+}
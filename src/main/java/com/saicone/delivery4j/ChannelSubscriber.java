@@ -0,0 +1,124 @@
+package com.saicone.delivery4j;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscriber that send every received item as multi-line message into a channel.<br>
+ * A limited number of messages can be sending at the same time, and a new item is
+ * requested every time a message is sent, so a fast publisher never floods the broker.<br>
+ * If any message cannot be sent, the subscription is cancelled.
+ *
+ * @author Rubenicos
+ */
+public class ChannelSubscriber implements Flow.Subscriber<Object[]> {
+
+    private final AbstractMessenger messenger;
+    private final String channel;
+    private final int window;
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean done;
+
+    /**
+     * Constructs a channel subscriber.
+     *
+     * @param messenger the messenger that send the messages.
+     * @param channel   the channel name.
+     * @param window    the maximum number of messages that can be sending at the same time.
+     */
+    public ChannelSubscriber(@NotNull AbstractMessenger messenger, @NotNull String channel, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window must be positive");
+        }
+        this.messenger = messenger;
+        this.channel = channel;
+        this.window = window;
+    }
+
+    /**
+     * Get the channel name.
+     *
+     * @return a channel name.
+     */
+    @NotNull
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * Get the maximum number of messages that can be sending at the same time.
+     *
+     * @return a message count.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Get the completion of this subscriber.
+     *
+     * @return a {@link CompletableFuture} that is completed once the publisher is completed and every message is sent.
+     */
+    @NotNull
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "The subscription cannot be null");
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(this.window);
+    }
+
+    @Override
+    public void onNext(Object[] lines) {
+        this.inFlight.incrementAndGet();
+        final CompletableFuture<Void> future;
+        try {
+            future = this.messenger.send(this.channel, lines);
+        } catch (Throwable t) {
+            fail(t);
+            return;
+        }
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                fail(error);
+            } else if (this.inFlight.decrementAndGet() == 0 && this.done) {
+                this.completion.complete(null);
+            } else if (!this.completion.isDone()) {
+                this.subscription.request(1);
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.done = true;
+        if (this.inFlight.get() == 0) {
+            this.completion.complete(null);
+        }
+    }
+
+    private void fail(@NotNull Throwable throwable) {
+        if (this.completion.completeExceptionally(throwable)) {
+            this.subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.saicone.delivery4j;
+
+import com.saicone.delivery4j.util.Buffers;
+import com.saicone.delivery4j.util.Encryptor;
+import com.saicone.delivery4j.util.TaggedValues;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * A received multi-line message with typed accessors for each line.<br>
+ * Messages encoded with tagged lines keep the original value types, so numbers,
+ * booleans and UUIDs are given back without parsing any String, while messages
+ * encoded as plain lines are parsed from String on every access.<br>
+ * Messages given to channel consumers are lazy views over the received data: the line
+ * offsets are indexed once and every line is decoded (and decrypted) only when accessed,
+ * so the view must not be used after the consumer returns, use {@link #copy()} to retain it.
+ *
+ * @author Rubenicos
+ */
+public class Message {
+
+    private static final Object UNDECODED = new Object();
+
+    private static final byte PLAIN = 0;
+    private static final byte PLAIN_ENCRYPTED = 1;
+    private static final byte TAGGED = 2;
+    private static final byte TAGGED_ENCRYPTED = 3;
+
+    private final Object[] values;
+
+    private final String channel;
+    private final Encryptor encryptor;
+    private final ByteBuffer data;
+    private final int[] offsets;
+    private final byte format;
+
+    /**
+     * Constructs a message with provided line values.
+     *
+     * @param values the message lines.
+     */
+    Message(@NotNull Object[] values) {
+        this(values, null, null, null, null, PLAIN);
+    }
+
+    private Message(@NotNull Object[] values, @Nullable String channel, @Nullable Encryptor encryptor, @Nullable ByteBuffer data, @Nullable int[] offsets, byte format) {
+        this.values = values;
+        this.channel = channel;
+        this.encryptor = encryptor;
+        this.data = data;
+        this.offsets = offsets;
+        this.format = format;
+    }
+
+    /**
+     * Create a lazy message view by indexing the line offsets of provided data.
+     *
+     * @param channel   the channel name.
+     * @param encryptor the channel encryptor, null if the lines are not encrypted.
+     * @param data      the remaining bytes after message header, starting with the line count.
+     * @param tagged    true if the lines are tagged values, false if they are plain Strings.
+     * @return          a message view.
+     * @throws EOFException if the line count is bigger than the remaining bytes.
+     * @throws BufferUnderflowException if the tagged lines are incomplete.
+     * @throws IllegalArgumentException if any tagged line has an unknown type tag.
+     */
+    @NotNull
+    static Message index(@NotNull String channel, @Nullable Encryptor encryptor, @NotNull ByteBuffer data, boolean tagged) throws EOFException {
+        final byte format;
+        final int[] offsets;
+        if (tagged) {
+            format = encryptor == null ? TAGGED : TAGGED_ENCRYPTED;
+            offsets = new int[count(data, Buffers.readVarInt(data))];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = data.position();
+                if (format == TAGGED) {
+                    TaggedValues.skip(data);
+                } else {
+                    final int length = Buffers.readVarInt(data);
+                    data.position(data.position() + length);
+                }
+            }
+        } else {
+            format = encryptor == null ? PLAIN : PLAIN_ENCRYPTED;
+            offsets = new int[count(data, data.getInt())];
+            Arrays.fill(offsets, -1);
+            // Incomplete plain lines are given as null, like String decoding does
+            try {
+                for (int i = 0; i < offsets.length; i++) {
+                    final int offset = data.position();
+                    final int length = format == PLAIN ? data.getShort() & 0xFFFF : data.getInt();
+                    if (length < 0 || length > data.remaining()) {
+                        break;
+                    }
+                    data.position(data.position() + length);
+                    offsets[i] = offset;
+                }
+            } catch (BufferUnderflowException ignored) { }
+        }
+        final Object[] values = new Object[offsets.length];
+        Arrays.fill(values, UNDECODED);
+        return new Message(values, channel, encryptor, data, offsets, format);
+    }
+
+    private static int count(@NotNull ByteBuffer data, int count) throws EOFException {
+        // Every line takes at least one byte, so the count from the wire is checked before allocating the offsets
+        if (count < 0 || count > data.remaining()) {
+            throw new EOFException("expected " + count + " lines, but " + data.remaining() + " bytes remaining");
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of lines in this message.
+     *
+     * @return a line count.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Check if the line at provided index is null.
+     *
+     * @param index the line index.
+     * @return      true if the line is null.
+     */
+    public boolean isNull(int index) {
+        return get(index) == null;
+    }
+
+    /**
+     * Get the line value at provided index without any conversion.
+     *
+     * @param index the line index.
+     * @return      the line value.
+     * @throws IllegalStateException if the line cannot be decoded.
+     */
+    @Nullable
+    public Object get(int index) {
+        Object value = values[index];
+        if (value == UNDECODED) {
+            value = decode(index);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Nullable
+    private Object decode(int index) {
+        final int offset = offsets[index];
+        if (offset < 0) {
+            return null;
+        }
+        final ByteBuffer buffer = data.duplicate().position(offset);
+        try {
+            switch (format) {
+                case PLAIN:
+                    return plain(Buffers.readUTF(buffer));
+                case PLAIN_ENCRYPTED:
+                    return plain(encryptor.decrypt(Buffers.readBytes(buffer, buffer.getInt())));
+                case TAGGED:
+                    return TaggedValues.read(buffer);
+                case TAGGED_ENCRYPTED:
+                    return TaggedValues.read(ByteBuffer.wrap(encryptor.decryptBytes(Buffers.readBytes(buffer, Buffers.readVarInt(buffer)))));
+                default:
+                    throw new IllegalStateException("Unknown message format: " + format);
+            }
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot decode line " + index + " from channel " + channel, t);
+        }
+    }
+
+    @Nullable
+    private static String plain(@NotNull String line) {
+        return line.equalsIgnoreCase("null") ? null : line;
+    }
+
+    /**
+     * Get the line at provided index as String.<br>
+     * Byte arrays are given as Base64 String.
+     *
+     * @param index the line index.
+     * @return      a String value, null if the line is null.
+     */
+    @Nullable
+    public String getString(int index) {
+        return toString(get(index));
+    }
+
+    /**
+     * Get the line at provided index as int.
+     *
+     * @param index the line index.
+     * @return      an int value.
+     * @throws NumberFormatException if the line is not a number.
+     */
+    public int getInt(int index) {
+        final Object value = get(index);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return Integer.parseInt(String.valueOf(value));
+    }
+
+    /**
+     * Get the line at provided index as long.
+     *
+     * @param index the line index.
+     * @return      a long value.
+     * @throws NumberFormatException if the line is not a number.
+     */
+    public long getLong(int index) {
+        final Object value = get(index);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(String.valueOf(value));
+    }
+
+    /**
+     * Get the line at provided index as float.
+     *
+     * @param index the line index.
+     * @return      a float value.
+     * @throws NumberFormatException if the line is not a number.
+     */
+    public float getFloat(int index) {
+        final Object value = get(index);
+        if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        return Float.parseFloat(String.valueOf(value));
+    }
+
+    /**
+     * Get the line at provided index as double.
+     *
+     * @param index the line index.
+     * @return      a double value.
+     * @throws NumberFormatException if the line is not a number.
+     */
+    public double getDouble(int index) {
+        final Object value = get(index);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * Get the line at provided index as boolean.
+     *
+     * @param index the line index.
+     * @return      true if the line is a true boolean, a non-zero number or a String equal to {@code "true"}, false otherwise.
+     */
+    public boolean getBoolean(int index) {
+        final Object value = get(index);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        }
+        return Boolean.parseBoolean(String.valueOf(value));
+    }
+
+    /**
+     * Get the line at provided index as UUID.
+     *
+     * @param index the line index.
+     * @return      an UUID value, null if the line is null.
+     * @throws IllegalArgumentException if the line is not an UUID.
+     */
+    @Nullable
+    public UUID getUuid(int index) {
+        final Object value = get(index);
+        if (value == null || value instanceof UUID) {
+            return (UUID) value;
+        }
+        return UUID.fromString(String.valueOf(value));
+    }
+
+    /**
+     * Get the line at provided index as byte array.<br>
+     * String lines are decoded as Base64.
+     *
+     * @param index the line index.
+     * @return      a byte array value, null if the line is null.
+     * @throws IllegalArgumentException if the line is not a byte array or a Base64 String.
+     */
+    public byte[] getBytes(int index) {
+        final Object value = get(index);
+        if (value == null || value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        return Base64.getDecoder().decode(String.valueOf(value));
+    }
+
+    /**
+     * Check if this message is a lazy view over received data.
+     *
+     * @return true if the lines are decoded on access.
+     */
+    public boolean isView() {
+        return data != null;
+    }
+
+    /**
+     * Copy this message by decoding all the lines, so it can be retained after the
+     * consumer returns and it's not linked to any received data.
+     *
+     * @return a fully decoded message, or this message if it's already not a view.
+     */
+    @NotNull
+    public Message copy() {
+        if (data == null) {
+            return this;
+        }
+        final Object[] values = new Object[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(i);
+        }
+        return new Message(values);
+    }
+
+    /**
+     * Convert this message into String lines.
+     *
+     * @return a multi-line message.
+     */
+    @NotNull
+    public String[] toArray() {
+        final String[] lines = new String[size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = getString(i);
+        }
+        return lines;
+    }
+
+    @Nullable
+    static String toString(@Nullable Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        } else if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        return String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -1,34 +1,79 @@
 package com.saicone.delivery4j;
 
+import com.saicone.delivery4j.cache.GenerationalCache;
+import com.saicone.delivery4j.cache.SequenceCache;
+import com.saicone.delivery4j.util.BufferOutput;
+import com.saicone.delivery4j.util.BufferPool;
+import com.saicone.delivery4j.util.Buffers;
 import com.saicone.delivery4j.util.Encryptor;
+import com.saicone.delivery4j.util.MessageSerializer;
+import com.saicone.delivery4j.util.SerialExecutor;
+import com.saicone.delivery4j.util.TaggedValues;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * An object to consume channel messages.<br>
- * This object can also provide an {@link Encryptor} to make a secure message delivery.
+ * This object can also provide an {@link Encryptor} to make a secure message delivery.<br>
+ * <br>
+ * Multi-line messages are encoded using the legacy frame format, any other message type
+ * is written with a frame header that starts with a magic byte, followed by the message
+ * type and the header flags.
  *
  * @author Rubenicos
  */
 public class MessageChannel {
 
+    private static final byte MAGIC = (byte) 0xD4;
+    private static final int HEADER_SIZE = 3;
+
+    private static final byte TYPE_LINES = 1;
+    private static final byte TYPE_BYTES = 2;
+    private static final byte TYPE_OBJECT = 3;
+    private static final byte TYPE_BATCH = 4;
+    private static final byte TYPE_REQUEST = 5;
+    private static final byte TYPE_REPLY = 6;
+
+    private static final byte FLAG_ID = 1;
+    private static final byte FLAG_ENCRYPTED = 1 << 1;
+    private static final byte FLAG_ORIGIN = 1 << 2;
+
     private final String name;
-    private ChannelConsumer<String[]> consumer;
+    private final ChannelListeners<String[]> consumer = new ChannelListeners<>();
+    private final ChannelListeners<Message> messageConsumer = new ChannelListeners<>();
+    private final ChannelListeners<byte[]> bytesConsumer = new ChannelListeners<>();
+    private final ChannelListeners<Object> objectConsumer = new ChannelListeners<>();
     private Cache cache;
     private Encryptor encryptor;
+    private MessageSerializer<Object> serializer;
+    private boolean tagged;
+    private boolean framed;
+    private long linger;
+    private boolean autoBatch;
+    private int maxBatchBytes = 16 * 1024;
+    private BufferPool pool = BufferPool.SHARED;
+    private int lastSize = 256;
+    private Function<Message, Object> partitionKey;
+    private int partitions = 1;
+    private int inboundCapacity = Integer.MAX_VALUE;
+    private SerialExecutor.Overflow overflow = SerialExecutor.Overflow.BLOCK;
+    private ChannelResponder responder;
+    private long requestTimeout = TimeUnit.SECONDS.toNanos(10);
 
     /**
      * Create a message channel with provided name.
@@ -58,7 +103,9 @@ public class MessageChannel {
      */
     public MessageChannel(@NotNull String name, @Nullable ChannelConsumer<String[]> consumer) {
         this.name = name;
-        this.consumer = consumer;
+        if (consumer != null) {
+            this.consumer.add(consumer);
+        }
     }
 
     /**
@@ -78,9 +125,79 @@ public class MessageChannel {
      */
     @Nullable
     public ChannelConsumer<String[]> getConsumer() {
+        return consumer.isEmpty() ? null : consumer;
+    }
+
+    /**
+     * Get the current typed message consumer.
+     *
+     * @return a channel consumer that accept multi-line messages with typed accessors.
+     */
+    @Nullable
+    public ChannelConsumer<Message> getMessageConsumer() {
+        return messageConsumer.isEmpty() ? null : messageConsumer;
+    }
+
+    /**
+     * Get the current binary message consumer.
+     *
+     * @return a channel consumer that accept byte array messages.
+     */
+    @Nullable
+    public ChannelConsumer<byte[]> getBytesConsumer() {
+        return bytesConsumer.isEmpty() ? null : bytesConsumer;
+    }
+
+    /**
+     * Get the current object message consumer.
+     *
+     * @return a channel consumer that accept deserialized objects.
+     */
+    @Nullable
+    public ChannelConsumer<Object> getObjectConsumer() {
+        return objectConsumer.isEmpty() ? null : objectConsumer;
+    }
+
+    /**
+     * Get the registry of multi-line message consumers.
+     *
+     * @return a listener registry that can be used to add or remove consumers.
+     */
+    @NotNull
+    public ChannelListeners<String[]> getListeners() {
         return consumer;
     }
 
+    /**
+     * Get the registry of typed message consumers.
+     *
+     * @return a listener registry that can be used to add or remove consumers.
+     */
+    @NotNull
+    public ChannelListeners<Message> getMessageListeners() {
+        return messageConsumer;
+    }
+
+    /**
+     * Get the registry of binary message consumers.
+     *
+     * @return a listener registry that can be used to add or remove consumers.
+     */
+    @NotNull
+    public ChannelListeners<byte[]> getBytesListeners() {
+        return bytesConsumer;
+    }
+
+    /**
+     * Get the registry of object message consumers.
+     *
+     * @return a listener registry that can be used to add or remove consumers.
+     */
+    @NotNull
+    public ChannelListeners<Object> getObjectListeners() {
+        return objectConsumer;
+    }
+
     /**
      * Get the current cache instance.
      *
@@ -101,6 +218,128 @@ public class MessageChannel {
         return encryptor;
     }
 
+    /**
+     * Get the current object serializer.
+     *
+     * @return a message serializer if exists, null otherwise.
+     */
+    @Nullable
+    public MessageSerializer<Object> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Get the current line encoding status.
+     *
+     * @return true if the message lines are encoded with type tags.
+     */
+    public boolean isTagged() {
+        return tagged;
+    }
+
+    /**
+     * Get the current plain line framing status.
+     *
+     * @return true if plain message lines are written as a message frame.
+     */
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * Get the maximum time that outbound multi-line messages are held to be sent together.
+     *
+     * @return a linger time in nanoseconds, 0 if outbound messages are not coalesced.
+     */
+    public long getLinger() {
+        return linger;
+    }
+
+    /**
+     * Check if outbound multi-line messages that are waiting to be written are sent together.
+     *
+     * @return true if waiting messages are batched.
+     */
+    public boolean isAutoBatch() {
+        return autoBatch;
+    }
+
+    /**
+     * Get the maximum estimated bytes of coalesced messages before sending them together.
+     *
+     * @return a size in bytes.
+     */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * Get the current request responder.
+     *
+     * @return a channel responder that reply received requests, null if requests are ignored.
+     */
+    @Nullable
+    public ChannelResponder getResponder() {
+        return responder;
+    }
+
+    /**
+     * Get the maximum time to wait for a reply of requests sent to this channel.
+     *
+     * @return a timeout in nanoseconds.
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Get the function that extract the partition key from received messages.
+     *
+     * @return a partition key function if received messages are partitioned, null otherwise.
+     */
+    @Nullable
+    public Function<Message, Object> getPartitionKey() {
+        return partitionKey;
+    }
+
+    /**
+     * Get the number of partitions that received messages are distributed to.
+     *
+     * @return a partition count.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Get the maximum number of received messages that can wait to be consumed.
+     *
+     * @return a message count.
+     */
+    public int getInboundCapacity() {
+        return inboundCapacity;
+    }
+
+    /**
+     * Get the policy applied when received messages reach the inbound capacity.
+     *
+     * @return an overflow policy.
+     */
+    @NotNull
+    public SerialExecutor.Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Get the current buffer pool used on message encoding.
+     *
+     * @return a buffer pool if pooling is enabled, null otherwise.
+     */
+    @Nullable
+    public BufferPool getPool() {
+        return pool;
+    }
+
     /**
      * Set or append provided consumer into channel inbound consumer.
      *
@@ -110,11 +349,7 @@ public class MessageChannel {
     @NotNull
     @Contract("_ -> this")
     public MessageChannel consume(@NotNull ChannelConsumer<String[]> consumer) {
-        if (this.consumer == null) {
-            this.consumer = consumer;
-        } else {
-            this.consumer = this.consumer.andThen(consumer);
-        }
+        this.consumer.add(consumer);
         return this;
     }
 
@@ -127,11 +362,50 @@ public class MessageChannel {
     @NotNull
     @Contract("_ -> this")
     public MessageChannel consumeBefore(@NotNull ChannelConsumer<String[]> consumer) {
-        if (this.consumer == null) {
-            this.consumer = consumer;
-        } else {
-            this.consumer = consumer.andThen(this.consumer);
-        }
+        this.consumer.addFirst(consumer);
+        return this;
+    }
+
+    /**
+     * Set or append provided consumer into channel inbound typed message consumer.
+     *
+     * @param consumer the consumer that accept multi-line messages with typed accessors.
+     * @return         the current message channel.
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel consumeMessage(@NotNull ChannelConsumer<Message> consumer) {
+        this.messageConsumer.add(consumer);
+        return this;
+    }
+
+    /**
+     * Set or append provided consumer into channel inbound binary consumer.
+     *
+     * @param consumer the consumer that accept byte array messages.
+     * @return         the current message channel.
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel consumeBytes(@NotNull ChannelConsumer<byte[]> consumer) {
+        this.bytesConsumer.add(consumer);
+        return this;
+    }
+
+    /**
+     * Set or append provided consumer into channel inbound object consumer.<br>
+     * The consumed objects are deserialized using the current channel serializer.
+     *
+     * @param consumer the consumer that accept deserialized objects.
+     * @return         the current message channel.
+     * @param <T>      the object type produced by channel serializer.
+     * @see #serializer(MessageSerializer)
+     */
+    @NotNull
+    @Contract("_ -> this")
+    @SuppressWarnings("unchecked")
+    public <T> MessageChannel consumeObject(@NotNull ChannelConsumer<T> consumer) {
+        this.objectConsumer.add((ChannelConsumer<Object>) consumer);
         return this;
     }
 
@@ -164,6 +438,21 @@ public class MessageChannel {
         return cache(Cache.of(duration, unit));
     }
 
+    /**
+     * Set a sliding window deduplication for the current message channel.<br>
+     * Unlike time-based caches, any message that was redelivered by broker is suppressed
+     * using the sequence of its origin node, with fixed memory per origin.
+     *
+     * @param window the number of sequences to remember per origin.
+     * @return       the current message channel.
+     * @see SequenceCache
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel dedup(int window) {
+        return cache(new SequenceCache(window, 10, TimeUnit.MINUTES));
+    }
+
     /**
      * Set the cache instance for the current message channel.
      *
@@ -191,154 +480,1149 @@ public class MessageChannel {
     }
 
     /**
-     * Encodes the specified message lines into byte array.
+     * Set the object serializer for the current message channel.
      *
-     * @param lines message to encode.
-     * @return      a byte array that represent the message.
-     * @throws IOException if the message lines cannot be encoded as bytes.
+     * @param serializer the message serializer.
+     * @return           the current message channel.
      */
-    public byte[] encode(@Nullable Object... lines) throws IOException {
-        try (ByteArrayOutputStream arrayOut = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(arrayOut)) {
-            if (this.cache != null) {
-                out.writeInt(this.cache.generate());
-            }
-            out.writeInt(lines.length);
-            if (this.encryptor == null) {
-                for (Object message : lines) {
-                    out.writeUTF(Objects.toString(message));
-                }
-            } else {
-                try {
-                    for (Object message : lines) {
-                        final byte[] bytes = this.encryptor.encrypt(Objects.toString(message));
-                        out.writeInt(bytes.length);
-                        out.write(bytes);
-                    }
-                } catch (Throwable t) {
-                    throw new IOException("Cannot encrypt message into channel " + this.name, t);
-                }
-            }
-            return arrayOut.toByteArray();
-        }
+    @NotNull
+    @Contract("_ -> this")
+    @SuppressWarnings("unchecked")
+    public MessageChannel serializer(@Nullable MessageSerializer<?> serializer) {
+        this.serializer = (MessageSerializer<Object>) serializer;
+        return this;
     }
 
     /**
-     * Decodes a byte array into a multi-line message.
+     * Set the line encoding for the current message channel.<br>
+     * Tagged lines are written with a single-byte type tag, so numbers, booleans, UUIDs and
+     * byte arrays are sent in binary form instead of String, and a real {@code "null"} String
+     * is not confused with a null line.<br>
+     * Take in count that any application consuming this channel must support tagged lines.
      *
-     * @param src the byte array to decode.
-     * @return    a message from byte array.
-     * @throws IOException if the bytes cannot be decoded from bytes.
+     * @param tagged true to encode message lines with type tags, false to encode them as plain Strings.
+     * @return       the current message channel.
      */
-    @Nullable
-    public String[] decode(byte[] src) throws IOException {
-        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(src))) {
-            if (this.cache != null && this.cache.contains(in.readInt())) {
-                return null;
-            }
-            final String[] lines = new String[in.readInt()];
-            try {
-                if (this.encryptor == null) {
-                    for (int i = 0; i < lines.length; i++) {
-                        final String message = in.readUTF();
-                        lines[i] = message.equalsIgnoreCase("null") ? null : message;
-                    }
-                } else {
-                    try {
-                        for (int i = 0; i < lines.length; i++) {
-                            final String message = this.encryptor.decrypt(in.readNBytes(in.readInt()));
-                            lines[i] = message.equalsIgnoreCase("null") ? null : message;
-                        }
-                    } catch (Throwable t) {
-                        throw new IOException("Cannot decrypt message from channel " + this.name, t);
-                    }
-                }
-            } catch (EOFException ignored) { }
-            return lines;
-        }
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel tagged(boolean tagged) {
+        this.tagged = tagged;
+        return this;
     }
 
     /**
-     * Accept the provided pre-decoded data into current consumer.
+     * Set the plain line framing for the current message channel.<br>
+     * Framed plain lines are written as a message frame with String values, so a channel with cache
+     * identifies every message by the sender node and a sequence number instead of a random int ID,
+     * and any line length is allowed. Null lines and {@code "null"} Strings are decoded as null lines,
+     * the same as unframed plain lines.<br>
+     * Take in count that any application consuming this channel must support message frames.
      *
-     * @param src the byte array to decode.
-     * @return    true if the data was processed correctly, false otherwise.
-     * @throws IOException if any error occurs in this operation.
+     * @param framed true to write plain lines as a message frame, false to use the legacy layout.
+     * @return       the current message channel.
      */
-    public boolean accept(byte[] src) throws IOException {
-        final String[] lines = decode(src);
-        if (lines == null) {
-            return false;
-        }
-        if (this.consumer != null) {
-            this.consumer.accept(getName(), lines);
-        }
-        return true;
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel framed(boolean framed) {
+        this.framed = framed;
+        return this;
     }
 
     /**
-     * Clear the current message channel instance.
+     * Set the linger time for outbound multi-line messages on the current message channel.<br>
+     * Any message sent within the linger time is held and sent together with the others as a
+     * single batch, so multiple messages sent in a tight loop only use one broker operation.
+     *
+     * @param time the maximum time to hold a message, 0 to send every message immediately.
+     * @param unit the time unit of the linger time.
+     * @return     the current message channel.
+     * @see AbstractMessenger#sendBatch(String, List)
      */
-    public void clear() {
-        if (this.cache != null) {
-            this.cache.clear();
-        }
+    @NotNull
+    @Contract("_, _ -> this")
+    public MessageChannel linger(long time, @NotNull TimeUnit unit) {
+        this.linger = Math.max(0, unit.toNanos(time));
+        return this;
     }
 
     /**
-     * Cache interface to store message IDs with certain delay.
+     * Set the automatic batching status for the current message channel.<br>
+     * Unlike linger time, messages are never held: when a message is written while other
+     * multi-line messages are still waiting on the channel writer, they are all sent together
+     * as a single broker message, up to the maximum batch bytes.
+     *
+     * @param autoBatch true to send waiting messages together.
+     * @return          the current message channel.
+     * @see #maxBatchBytes(int)
      */
-    public static abstract class Cache {
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel autoBatch(boolean autoBatch) {
+        this.autoBatch = autoBatch;
+        return this;
+    }
 
-        /**
-         * Create a cache with provided expiration.<br>
-         * This method try to find the best available implementation and uses it.
-         *
-         * @param duration the length of time after a message ID is automatically removed.
-         * @param unit     the unit that {@code duration} is expressed in.
-         * @return         a newly generate cache instance.
-         */
-        @NotNull
-        public static Cache of(long duration, @NotNull TimeUnit unit) {
-            try {
-                Class.forName("com.github.benmanes.caffeine.cache.Caffeine");
-                return Class.forName("com.saicone.delivery4j.cache.CaffeineCache")
-                        .asSubclass(Cache.class)
-                        .getDeclaredConstructor(long.class, TimeUnit.class)
-                        .newInstance(duration, unit);
-            } catch (Throwable ignored) { }
+    /**
+     * Set the maximum estimated bytes of coalesced messages on the current message channel,
+     * once the held messages reach this size they are sent without waiting the linger time.
+     *
+     * @param maxBatchBytes the maximum size in bytes.
+     * @return              the current message channel.
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel maxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
 
-            try {
-                Class.forName("com.google.common.cache.CacheBuilder");
-                return Class.forName("com.saicone.delivery4j.cache.GuavaCache")
+    /**
+     * Set the responder of requests received on the current message channel.<br>
+     * If the responder return null, the request is not replied, so other node can reply it.
+     *
+     * @param responder the responder that reply received requests, null to ignore them.
+     * @return          the current message channel.
+     * @see AbstractMessenger#request(String, Object...)
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel respond(@Nullable ChannelResponder responder) {
+        this.responder = responder;
+        return this;
+    }
+
+    /**
+     * Set the maximum time to wait for a reply of requests sent to the current message channel.
+     *
+     * @param time the maximum time to wait.
+     * @param unit the time unit of the timeout.
+     * @return     the current message channel.
+     */
+    @NotNull
+    @Contract("_, _ -> this")
+    public MessageChannel requestTimeout(long time, @NotNull TimeUnit unit) {
+        if (time <= 0) {
+            throw new IllegalArgumentException("The request timeout must be positive");
+        }
+        this.requestTimeout = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Partition the received messages by the line at provided index.
+     *
+     * @param line       the line index used as partition key.
+     * @param partitions the number of partitions.
+     * @return           the current message channel.
+     * @see #partition(Function, int)
+     */
+    @NotNull
+    @Contract("_, _ -> this")
+    public MessageChannel partition(int line, int partitions) {
+        return partition(message -> line < message.size() ? message.get(line) : null, partitions);
+    }
+
+    /**
+     * Partition the received messages by the key returned from provided function.<br>
+     * When the messenger consume this channel with a dispatcher, the messages are distributed
+     * by key hash into the given number of serial workers, so messages with the same key are
+     * consumed in the received order while messages with different keys are consumed in parallel.<br>
+     * Binary and object messages are always consumed by the first partition.
+     *
+     * @param key        the function to extract a partition key from received multi-line messages, null to disable partitioning.
+     * @param partitions the number of partitions.
+     * @return           the current message channel.
+     * @see AbstractMessenger#setDispatcher(java.util.concurrent.Executor)
+     */
+    @NotNull
+    @Contract("_, _ -> this")
+    public MessageChannel partition(@Nullable Function<Message, Object> key, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("The number of partitions must be positive");
+        }
+        this.partitionKey = key;
+        this.partitions = key == null ? 1 : partitions;
+        return this;
+    }
+
+    /**
+     * Bound the received messages that can wait to be consumed when the messenger consume
+     * this channel with a dispatcher.<br>
+     * The capacity is split evenly between partitions, so every partition can hold up to
+     * {@code max(1, capacity / partitions)} waiting messages, and once a partition reach its limit
+     * the provided policy is applied, {@link SerialExecutor.Overflow#CONFLATE} replaces any waiting
+     * message with the same partition key.
+     *
+     * @param capacity the maximum number of waiting messages across all partitions.
+     * @param overflow the policy to apply when the capacity is reached.
+     * @return         the current message channel.
+     * @see AbstractMessenger#setDispatcher(java.util.concurrent.Executor)
+     */
+    @NotNull
+    @Contract("_, _ -> this")
+    public MessageChannel inbound(int capacity, @NotNull SerialExecutor.Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The inbound capacity must be positive");
+        }
+        this.inboundCapacity = capacity;
+        this.overflow = overflow;
+        return this;
+    }
+
+    /**
+     * Set the encode buffer pooling status for the current message channel.
+     *
+     * @param enable true to use the shared buffer pool, false to encode every message into a pre-sized buffer.
+     * @return       the current message channel.
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel pooling(boolean enable) {
+        return pool(enable ? BufferPool.SHARED : null);
+    }
+
+    /**
+     * Set the buffer pool used on message encoding for the current message channel.
+     *
+     * @param pool the buffer pool, null to disable pooling.
+     * @return     the current message channel.
+     */
+    @NotNull
+    @Contract("_ -> this")
+    public MessageChannel pool(@Nullable BufferPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Encodes the specified message lines into byte array.
+     *
+     * @param lines message to encode.
+     * @return      a byte array that represent the message.
+     * @throws IOException if the message lines cannot be encoded as bytes.
+     */
+    public byte[] encode(@Nullable Object... lines) throws IOException {
+        return Buffers.toArray(encodeBuffer(lines));
+    }
+
+    /**
+     * Encodes the specified message lines into a byte buffer.<br>
+     * If pooling is enabled the message is written into a pooled buffer and copied once
+     * into the returned buffer, otherwise it's written into a pre-sized buffer.<br>
+     * Any line longer than 65535 bytes makes the whole message to be written as tagged String
+     * lines with variable-length prefix, so there's no length limit.<br>
+     * If the current channel is framed, plain lines are always written as tagged String lines,
+     * so a message with cache carries a 64-bit node and sequence ID instead of a random int ID.<br>
+     * The returned buffer is ready to be read and is backed by an array with the exact message size.
+     *
+     * @param lines message to encode.
+     * @return      a byte buffer that represent the message.
+     * @throws IOException if the message lines cannot be encoded as bytes.
+     */
+    @NotNull
+    public ByteBuffer encodeBuffer(@Nullable Object... lines) throws IOException {
+        if (this.tagged) {
+            return encodeTagged(lines, false);
+        }
+        if (this.framed) {
+            return encodeTagged(lines, true);
+        }
+        try {
+            return encodePlain(lines);
+        } catch (UTFDataFormatException e) {
+            // Lines over 65535 bytes cannot be written as modified UTF-8, so they are written as String values
+            return encodeTagged(lines, true);
+        }
+    }
+
+    @NotNull
+    private ByteBuffer encodePlain(@Nullable Object... lines) throws IOException {
+        if (this.pool == null) {
+            return encodeSized(lines);
+        }
+        ByteBuffer buffer = this.pool.acquire(this.lastSize);
+        try {
+            writeHeader(buffer, lines.length);
+            if (this.encryptor == null) {
+                for (Object line : lines) {
+                    final String message = Objects.toString(line);
+                    if (buffer.remaining() < 2 + message.length() * 3) {
+                        final int utflen = Buffers.utfLength(message);
+                        buffer = this.pool.ensureRemaining(buffer, 2 + utflen);
+                        Buffers.writeUTF(buffer, message, utflen);
+                    } else {
+                        Buffers.writeUTF(buffer, message);
+                    }
+                }
+            } else {
+                for (Object line : lines) {
+                    final byte[] bytes;
+                    try {
+                        bytes = this.encryptor.encrypt(Objects.toString(line));
+                    } catch (Throwable t) {
+                        throw new IOException("Cannot encrypt message into channel " + this.name, t);
+                    }
+                    buffer = this.pool.ensureRemaining(buffer, 4 + bytes.length);
+                    buffer.putInt(bytes.length);
+                    buffer.put(bytes);
+                }
+            }
+            final byte[] data = new byte[buffer.position()];
+            buffer.flip().get(data);
+            this.lastSize = data.length;
+            return ByteBuffer.wrap(data);
+        } finally {
+            this.pool.release(buffer);
+        }
+    }
+
+    @NotNull
+    private ByteBuffer encodeTagged(@Nullable Object[] lines, boolean strings) throws IOException {
+        try (BufferOutput out = new BufferOutput(this.pool, this.lastSize)) {
+            writeFrameHeader(out.ensure(HEADER_SIZE + 8), TYPE_LINES, this.encryptor == null ? 0 : FLAG_ENCRYPTED);
+            writeLines(out, lines, strings);
+            final byte[] data = out.toByteArray();
+            this.lastSize = data.length;
+            return ByteBuffer.wrap(data);
+        }
+    }
+
+    private void writeLines(@NotNull BufferOutput out, @Nullable Object[] lines, boolean strings) throws IOException {
+        out.writeVarInt(lines.length);
+        if (this.encryptor == null) {
+            for (Object line : lines) {
+                TaggedValues.write(out, strings ? plain(line) : line);
+            }
+            return;
+        }
+        try (BufferOutput value = new BufferOutput(this.pool, 64)) {
+            for (Object line : lines) {
+                value.buffer().clear();
+                TaggedValues.write(value, strings ? plain(line) : line);
+                final byte[] bytes;
+                try {
+                    bytes = this.encryptor.encryptBytes(value.toByteArray());
+                } catch (Throwable t) {
+                    throw new IOException("Cannot encrypt message into channel " + this.name, t);
+                }
+                out.writeBytes(bytes);
+            }
+        }
+    }
+
+    @Nullable
+    private static String plain(@Nullable Object line) {
+        // Plain lines are decoded with "null" as null line, so it's written as null to keep the same result
+        final String s = Objects.toString(line);
+        return s.equalsIgnoreCase("null") ? null : s;
+    }
+
+    @NotNull
+    private ByteBuffer encodeSized(@Nullable Object... lines) throws IOException {
+        int size = this.cache != null ? 8 : 4;
+        final ByteBuffer buffer;
+        if (this.encryptor == null) {
+            final String[] strings = new String[lines.length];
+            final int[] lengths = new int[lines.length];
+            for (int i = 0; i < lines.length; i++) {
+                strings[i] = Objects.toString(lines[i]);
+                lengths[i] = Buffers.utfLength(strings[i]);
+                size += 2 + lengths[i];
+            }
+            buffer = ByteBuffer.allocate(size);
+            writeHeader(buffer, lines.length);
+            for (int i = 0; i < strings.length; i++) {
+                Buffers.writeUTF(buffer, strings[i], lengths[i]);
+            }
+        } else {
+            final byte[][] encrypted = new byte[lines.length][];
+            try {
+                for (int i = 0; i < lines.length; i++) {
+                    encrypted[i] = this.encryptor.encrypt(Objects.toString(lines[i]));
+                    size += 4 + encrypted[i].length;
+                }
+            } catch (Throwable t) {
+                throw new IOException("Cannot encrypt message into channel " + this.name, t);
+            }
+            buffer = ByteBuffer.allocate(size);
+            writeHeader(buffer, lines.length);
+            for (byte[] bytes : encrypted) {
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private void writeHeader(@NotNull ByteBuffer buffer, int lines) {
+        if (this.cache != null) {
+            buffer.putInt(this.cache.generate());
+        }
+        buffer.putInt(lines);
+    }
+
+    /**
+     * Encodes the specified multi-line messages into a single byte buffer.<br>
+     * Every message is written as tagged lines, if the current channel is not tagged
+     * the lines are converted to String before being written.
+     *
+     * @param messages the messages to encode.
+     * @return         a byte buffer that represent all the messages.
+     * @throws IOException if the message lines cannot be encoded as bytes.
+     */
+    @NotNull
+    public ByteBuffer encodeBatch(@NotNull List<Object[]> messages) throws IOException {
+        try (BufferOutput out = new BufferOutput(this.pool, this.lastSize); BufferOutput entry = new BufferOutput(this.pool, 256)) {
+            writeFrameHeader(out.ensure(HEADER_SIZE + 8), TYPE_BATCH, this.encryptor == null ? 0 : FLAG_ENCRYPTED);
+            out.writeVarInt(messages.size());
+            for (Object[] lines : messages) {
+                entry.buffer().clear();
+                writeLines(entry, lines, !this.tagged);
+                out.writeVarInt(entry.position());
+                out.write(entry.buffer().duplicate().flip());
+            }
+            final byte[] data = out.toByteArray();
+            this.lastSize = data.length;
+            return ByteBuffer.wrap(data);
+        }
+    }
+
+    /**
+     * Encodes the specified byte array as binary message into a byte buffer.<br>
+     * Unlike multi-line messages, the data is never converted to String, and
+     * the whole array is encrypted at once if the channel has an encryptor.
+     *
+     * @param data the binary message to encode.
+     * @return     a byte buffer that represent the message.
+     * @throws IOException if the data cannot be encrypted.
+     */
+    @NotNull
+    public ByteBuffer encodeBytes(byte[] data) throws IOException {
+        return encodeFrame(TYPE_BYTES, data);
+    }
+
+    /**
+     * Encodes the specified object using the current channel serializer into a byte buffer.
+     *
+     * @param object the object to encode.
+     * @return       a byte buffer that represent the message.
+     * @throws IOException if the object cannot be serialized or encrypted.
+     */
+    @NotNull
+    public ByteBuffer encodeObject(@NotNull Object object) throws IOException {
+        if (this.serializer == null) {
+            throw new IOException("The channel " + this.name + " doesn't have any serializer");
+        }
+        try (BufferOutput out = new BufferOutput(this.pool, this.lastSize)) {
+            if (this.encryptor == null) {
+                writeFrameHeader(out.ensure(HEADER_SIZE + 8), TYPE_OBJECT, (byte) 0);
+                this.serializer.serialize(out, object);
+                final byte[] data = out.toByteArray();
+                this.lastSize = data.length;
+                return ByteBuffer.wrap(data);
+            } else {
+                this.serializer.serialize(out, object);
+                return encodeFrame(TYPE_OBJECT, out.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Encodes the specified message lines as request into a byte buffer.<br>
+     * The correlation ID and the reply channel are written in the frame header.
+     *
+     * @param id      the correlation ID.
+     * @param replyTo the channel name where the reply must be sent.
+     * @param lines   message to encode.
+     * @return        a byte buffer that represent the request.
+     * @throws IOException if the message lines cannot be encoded as bytes.
+     */
+    @NotNull
+    ByteBuffer encodeRequest(long id, @NotNull String replyTo, @Nullable Object[] lines) throws IOException {
+        try (BufferOutput out = new BufferOutput(this.pool, this.lastSize)) {
+            writeFrameHeader(out.ensure(HEADER_SIZE + 8), TYPE_REQUEST, this.encryptor == null ? 0 : FLAG_ENCRYPTED);
+            out.writeLong(id);
+            out.writeString(replyTo);
+            writeLines(out, lines, !this.tagged);
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    /**
+     * Encodes the specified message lines as reply into a byte buffer.<br>
+     * Unlike other messages, replies never include the origin ID, since they are sent to a single node.
+     *
+     * @param id    the correlation ID of the replied request.
+     * @param error true if the lines represent an error message.
+     * @param lines message to encode.
+     * @return      a byte buffer that represent the reply.
+     * @throws IOException if the message lines cannot be encoded as bytes.
+     */
+    @NotNull
+    ByteBuffer encodeReply(long id, boolean error, @Nullable Object[] lines) throws IOException {
+        try (BufferOutput out = new BufferOutput(this.pool, this.lastSize)) {
+            out.ensure(HEADER_SIZE).put(MAGIC).put(TYPE_REPLY).put(this.encryptor == null ? 0 : FLAG_ENCRYPTED);
+            out.writeLong(id);
+            out.writeBoolean(error);
+            writeLines(out, lines, !this.tagged);
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+
+    @NotNull
+    private ByteBuffer encodeFrame(byte type, byte[] data) throws IOException {
+        byte flags = 0;
+        if (this.encryptor != null) {
+            flags |= FLAG_ENCRYPTED;
+            try {
+                data = this.encryptor.encryptBytes(data);
+            } catch (Throwable t) {
+                throw new IOException("Cannot encrypt message into channel " + this.name, t);
+            }
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (this.cache != null ? 8 : 0) + data.length);
+        writeFrameHeader(buffer, type, flags);
+        buffer.put(data);
+        return buffer.flip();
+    }
+
+    private void writeFrameHeader(@NotNull ByteBuffer buffer, byte type, byte flags) {
+        if (this.cache != null) {
+            flags |= FLAG_ORIGIN;
+        }
+        buffer.put(MAGIC).put(type).put(flags);
+        if (this.cache != null) {
+            buffer.putLong(this.cache.next());
+        }
+    }
+
+    /**
+     * Decodes a byte array into a multi-line message.
+     *
+     * @param src the byte array to decode.
+     * @return    a message from byte array.
+     * @throws IOException if the bytes cannot be decoded from bytes.
+     */
+    @Nullable
+    public String[] decode(byte[] src) throws IOException {
+        return decode(ByteBuffer.wrap(src));
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into a multi-line message.<br>
+     * The bytes are read directly from buffer, so any slice of a bigger buffer can be provided.
+     *
+     * @param src the byte buffer to decode.
+     * @return    a message from byte buffer.
+     * @throws IOException if the bytes cannot be decoded from buffer.
+     */
+    @Nullable
+    public String[] decode(@NotNull ByteBuffer src) throws IOException {
+        if (isFrame(src)) {
+            final Message message = decodeMessage(src);
+            return message == null ? null : message.toArray();
+        }
+        try {
+            if (this.cache != null && this.cache.contains(src.getInt())) {
+                return null;
+            }
+            final int count = src.getInt();
+            if (count < 0 || count > src.remaining()) {
+                throw new EOFException("expected " + count + " lines, but " + src.remaining() + " bytes remaining");
+            }
+            final String[] lines = new String[count];
+            try {
+                if (this.encryptor == null) {
+                    for (int i = 0; i < lines.length; i++) {
+                        final String message = Buffers.readUTF(src);
+                        lines[i] = message.equalsIgnoreCase("null") ? null : message;
+                    }
+                } else {
+                    for (int i = 0; i < lines.length; i++) {
+                        final byte[] bytes = Buffers.readBytes(src, src.getInt());
+                        final String message;
+                        try {
+                            message = this.encryptor.decrypt(bytes);
+                        } catch (Throwable t) {
+                            throw new IOException("Cannot decrypt message from channel " + this.name, t);
+                        }
+                        lines[i] = message.equalsIgnoreCase("null") ? null : message;
+                    }
+                }
+            } catch (BufferUnderflowException | EOFException ignored) { }
+            return lines;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into a multi-line message with typed accessors.<br>
+     * Both tagged and plain lines are supported.<br>
+     * The returned message is a lazy view that only index the line offsets, every line is
+     * decoded and decrypted on access, so the provided buffer must not be modified while
+     * the message is used, see {@link Message#copy()}.
+     *
+     * @param src the byte buffer to decode.
+     * @return    a message from byte buffer, null if the message ID is already cached.
+     * @throws IOException if the bytes cannot be decoded from buffer.
+     */
+    @Nullable
+    public Message decodeMessage(@NotNull ByteBuffer src) throws IOException {
+        final boolean tagged;
+        final Encryptor encryptor;
+        if (isFrame(src)) {
+            final int flags = readHeader(src, TYPE_LINES);
+            if (flags < 0) {
+                return null;
+            }
+            tagged = true;
+            encryptor = lineEncryptor(flags);
+        } else {
+            try {
+                if (this.cache != null && this.cache.contains(src.getInt())) {
+                    return null;
+                }
+            } catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+            tagged = false;
+            encryptor = this.encryptor;
+        }
+        try {
+            return Message.index(this.name, encryptor, src.slice(), tagged);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot decode message from channel " + this.name, e);
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into multiple multi-line messages.<br>
+     * Every message is a lazy view over the provided buffer, see {@link #decodeMessage(ByteBuffer)}.
+     *
+     * @param src the byte buffer to decode.
+     * @return    a list of messages from byte buffer, null if the batch ID is already cached.
+     * @throws IOException if the bytes cannot be decoded from buffer.
+     */
+    @Nullable
+    public List<Message> decodeBatch(@NotNull ByteBuffer src) throws IOException {
+        final int flags = readHeader(src, TYPE_BATCH);
+        if (flags < 0) {
+            return null;
+        }
+        final Encryptor encryptor = lineEncryptor(flags);
+        try {
+            final int count = Buffers.readVarInt(src);
+            final List<Message> messages = new ArrayList<>(Math.min(count, src.remaining()));
+            for (int i = 0; i < count; i++) {
+                final int length = Buffers.readVarInt(src);
+                if (length < 0 || length > src.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                final ByteBuffer entry = src.slice();
+                entry.limit(length);
+                src.position(src.position() + length);
+                messages.add(Message.index(this.name, encryptor, entry, true));
+            }
+            return messages;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot decode message from channel " + this.name, e);
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into a binary message.
+     *
+     * @param src the byte buffer to decode.
+     * @return    a binary message from byte buffer, null if the message ID is already cached.
+     * @throws IOException if the bytes cannot be decoded from buffer.
+     */
+    public byte[] decodeBytes(@NotNull ByteBuffer src) throws IOException {
+        final int flags = readHeader(src, TYPE_BYTES);
+        if (flags < 0) {
+            return null;
+        }
+        return Buffers.toArray(readPayload(src, flags));
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into an object using the current channel serializer.
+     *
+     * @param src the byte buffer to decode.
+     * @return    a deserialized object from byte buffer, null if the message ID is already cached.
+     * @param <T> the object type produced by channel serializer.
+     * @throws IOException if the bytes cannot be decoded from buffer.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T decodeObject(@NotNull ByteBuffer src) throws IOException {
+        if (this.serializer == null) {
+            throw new IOException("The channel " + this.name + " doesn't have any serializer");
+        }
+        final int flags = readHeader(src, TYPE_OBJECT);
+        if (flags < 0) {
+            return null;
+        }
+        return (T) this.serializer.deserialize(readPayload(src, flags));
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into a request.
+     *
+     * @param src the byte buffer to decode.
+     * @return    a request from byte buffer, null if the request ID is already cached.
+     * @throws IOException if the bytes cannot be decoded from buffer.
+     */
+    @Nullable
+    Request decodeRequest(@NotNull ByteBuffer src) throws IOException {
+        final int flags = readHeader(src, TYPE_REQUEST);
+        if (flags < 0) {
+            return null;
+        }
+        try {
+            final long id = src.getLong();
+            final String replyTo = Buffers.readString(src);
+            return new Request(id, replyTo, Message.index(this.name, lineEncryptor(flags), src.slice(), true).toArray());
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot decode request from channel " + this.name, e);
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of a byte buffer into reply lines.
+     *
+     * @param src the byte buffer to decode.
+     * @return    the reply lines.
+     * @throws IOException if the bytes cannot be decoded from buffer, or the reply is an error message.
+     */
+    @NotNull
+    String[] decodeReply(@NotNull ByteBuffer src) throws IOException {
+        final int flags = readHeader(src, TYPE_REPLY);
+        final String[] lines;
+        final boolean error;
+        try {
+            src.getLong();
+            error = src.get() != 0;
+            lines = Message.index(this.name, lineEncryptor(flags), src.slice(), true).toArray();
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot decode reply from channel " + this.name, e);
+        }
+        if (error) {
+            throw new IOException("The request to channel " + this.name + " failed: " + (lines.length > 0 ? lines[0] : null));
+        }
+        return lines;
+    }
+
+    /**
+     * Check if the provided buffer is a request message.
+     *
+     * @param src the byte buffer to check.
+     * @return    true if the buffer is a request.
+     */
+    static boolean isRequest(@NotNull ByteBuffer src) {
+        return isFrame(src) && src.get(src.position() + 1) == TYPE_REQUEST;
+    }
+
+    /**
+     * Check if the provided buffer is a reply message.
+     *
+     * @param src the byte buffer to check.
+     * @return    true if the buffer is a reply.
+     */
+    static boolean isReply(@NotNull ByteBuffer src) {
+        return isFrame(src) && src.get(src.position() + 1) == TYPE_REPLY;
+    }
+
+    /**
+     * Read the correlation ID of the provided reply message without consuming the buffer.
+     *
+     * @param src the byte buffer to read.
+     * @return    a correlation ID.
+     * @throws IOException if the buffer is not a valid reply.
+     */
+    static long replyId(@NotNull ByteBuffer src) throws IOException {
+        if (src.remaining() < HEADER_SIZE + 8) {
+            throw new EOFException();
+        }
+        return src.getLong(src.position() + HEADER_SIZE);
+    }
+
+    private static boolean isFrame(@NotNull ByteBuffer src) {
+        return src.remaining() >= HEADER_SIZE && src.get(src.position()) == MAGIC;
+    }
+
+    private int readHeader(@NotNull ByteBuffer src, byte type) throws IOException {
+        if (!isFrame(src) || src.get(src.position() + 1) != type) {
+            throw new IOException("The provided data from channel " + this.name + " is not a " + typeName(type) + " message");
+        }
+        try {
+            src.position(src.position() + 2);
+            final byte flags = src.get();
+            if ((flags & FLAG_ID) != 0) {
+                final int id = src.getInt();
+                if (this.cache != null && this.cache.contains(id)) {
+                    return -1;
+                }
+            }
+            if ((flags & FLAG_ORIGIN) != 0) {
+                final long id = src.getLong();
+                if (this.cache != null && !this.cache.accept(id)) {
+                    return -1;
+                }
+            }
+            return flags & 0xFF;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        }
+    }
+
+    @Nullable
+    private Encryptor lineEncryptor(int flags) throws IOException {
+        if ((flags & FLAG_ENCRYPTED) == 0) {
+            return null;
+        } else if (this.encryptor == null) {
+            throw new IOException("Cannot decrypt message from channel " + this.name + " without encryptor");
+        }
+        return this.encryptor;
+    }
+
+    @NotNull
+    private ByteBuffer readPayload(@NotNull ByteBuffer src, int flags) throws IOException {
+        if ((flags & FLAG_ENCRYPTED) == 0) {
+            return src.slice();
+        }
+        return decrypt(Buffers.readBytes(src, src.remaining()));
+    }
+
+    @NotNull
+    private ByteBuffer decrypt(byte[] data) throws IOException {
+        if (this.encryptor == null) {
+            throw new IOException("Cannot decrypt message from channel " + this.name + " without encryptor");
+        }
+        try {
+            return ByteBuffer.wrap(this.encryptor.decryptBytes(data));
+        } catch (Throwable t) {
+            throw new IOException("Cannot decrypt message from channel " + this.name, t);
+        }
+    }
+
+    @NotNull
+    private static String typeName(byte type) {
+        switch (type) {
+            case TYPE_LINES:
+                return "multi-line";
+            case TYPE_BYTES:
+                return "binary";
+            case TYPE_OBJECT:
+                return "object";
+            case TYPE_BATCH:
+                return "batch";
+            case TYPE_REQUEST:
+                return "request";
+            case TYPE_REPLY:
+                return "reply";
+            default:
+                return "unknown";
+        }
+    }
+
+    /**
+     * Accept the provided pre-decoded data into current consumer.
+     *
+     * @param src the byte array to decode.
+     * @return    true if the data was processed correctly, false otherwise.
+     * @throws IOException if any error occurs in this operation.
+     */
+    public boolean accept(byte[] src) throws IOException {
+        return accept(ByteBuffer.wrap(src));
+    }
+
+    /**
+     * Accept the provided pre-decoded buffer into current consumer.
+     *
+     * @param src the byte buffer to decode.
+     * @return    true if the data was processed correctly, false otherwise.
+     * @throws IOException if any error occurs in this operation.
+     */
+    public boolean accept(@NotNull ByteBuffer src) throws IOException {
+        if (isFrame(src)) {
+            switch (src.get(src.position() + 1)) {
+                case TYPE_LINES:
+                    return acceptLines(src);
+                case TYPE_BATCH:
+                    final List<Message> messages = decodeBatch(src);
+                    if (messages == null) {
+                        return false;
+                    }
+                    for (Message message : messages) {
+                        dispatch(message);
+                    }
+                    return true;
+                case TYPE_BYTES:
+                    final byte[] data = decodeBytes(src);
+                    if (data == null) {
+                        return false;
+                    }
+                    this.bytesConsumer.accept(getName(), data);
+                    return true;
+                case TYPE_OBJECT:
+                    final Object object = decodeObject(src);
+                    if (object == null) {
+                        return false;
+                    }
+                    this.objectConsumer.accept(getName(), object);
+                    return true;
+                case TYPE_REQUEST:
+                case TYPE_REPLY:
+                    // Only a messenger can reply requests
+                    return false;
+                default:
+                    throw new IOException("Unknown message type from channel " + this.name);
+            }
+        }
+        return acceptLines(src);
+    }
+
+    private boolean acceptLines(@NotNull ByteBuffer src) throws IOException {
+        if (this.messageConsumer.isEmpty()) {
+            final String[] lines = decode(src);
+            if (lines == null) {
+                return false;
+            }
+            this.consumer.accept(getName(), lines);
+            return true;
+        }
+        final Message message = decodeMessage(src);
+        if (message == null) {
+            return false;
+        }
+        dispatch(message);
+        return true;
+    }
+
+    /**
+     * Decode the provided buffer and hand every received message to the given executor with
+     * its partition index, instead of consuming it on the current thread.<br>
+     * The buffer must not be modified after this method returns, since the messages are views over its data.
+     *
+     * @param src    the byte buffer to decode.
+     * @param router the router that receive every delivery with its partition.
+     * @return       true if the data was processed correctly, false otherwise.
+     * @throws IOException if any error occurs in this operation.
+     */
+    boolean accept(@NotNull ByteBuffer src, @NotNull Router router) throws IOException {
+        if (isFrame(src)) {
+            switch (src.get(src.position() + 1)) {
+                case TYPE_LINES:
+                    break;
+                case TYPE_BATCH:
+                    final List<Message> messages = decodeBatch(src);
+                    if (messages == null) {
+                        return false;
+                    }
+                    for (Message message : messages) {
+                        route(router, message);
+                    }
+                    return true;
+                case TYPE_BYTES:
+                    final byte[] data = decodeBytes(src);
+                    if (data == null) {
+                        return false;
+                    }
+                    router.route(null, 0, () -> this.bytesConsumer.accept(getName(), data));
+                    return true;
+                case TYPE_OBJECT:
+                    final Object object = decodeObject(src);
+                    if (object == null) {
+                        return false;
+                    }
+                    router.route(null, 0, () -> this.objectConsumer.accept(getName(), object));
+                    return true;
+                case TYPE_REQUEST:
+                case TYPE_REPLY:
+                    // Only a messenger can reply requests
+                    return false;
+                default:
+                    throw new IOException("Unknown message type from channel " + this.name);
+            }
+        }
+        final Message message = decodeMessage(src);
+        if (message == null) {
+            return false;
+        }
+        route(router, message);
+        return true;
+    }
+
+    private void route(@NotNull Router router, @NotNull Message message) {
+        final Function<Message, Object> function = this.partitionKey;
+        final int partitions = this.partitions;
+        final Object value = function == null ? null : function.apply(message);
+        if (value == null) {
+            router.route(null, 0, () -> dispatch(message));
+            return;
+        }
+        // Tagged and plain lines must give the same key for equal values
+        final String key = Message.toString(value);
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        router.route(key, partitions <= 1 ? 0 : Math.floorMod(h * 0x9E3779B9, partitions), () -> dispatch(message));
+    }
+
+    private void dispatch(@NotNull Message message) throws IOException {
+        Throwable error = null;
+        if (!this.consumer.isEmpty()) {
+            try {
+                this.consumer.accept(getName(), message.toArray());
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+        // Message listeners are always notified, even if any line listener fails
+        try {
+            this.messageConsumer.accept(getName(), message);
+        } catch (Throwable t) {
+            if (error == null) {
+                error = t;
+            } else {
+                error.addSuppressed(t);
+            }
+        }
+        if (error != null) {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new IOException(error);
+        }
+    }
+
+    /**
+     * Clear the current message channel instance.
+     */
+    public void clear() {
+        if (this.cache != null) {
+            this.cache.clear();
+        }
+    }
+
+    /**
+     * A received request with its correlation ID.
+     */
+    static final class Request {
+
+        private final long id;
+        private final String replyTo;
+        private final String[] lines;
+
+        Request(long id, @NotNull String replyTo, @NotNull String[] lines) {
+            this.id = id;
+            this.replyTo = replyTo;
+            this.lines = lines;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        @NotNull
+        String getReplyTo() {
+            return replyTo;
+        }
+
+        @NotNull
+        String[] getLines() {
+            return lines;
+        }
+    }
+
+    /**
+     * Router of received messages into partitions.
+     */
+    @FunctionalInterface
+    interface Router {
+
+        /**
+         * Route the provided delivery.
+         *
+         * @param key       the partition key, null if the message doesn't have any key.
+         * @param partition the partition index.
+         * @param delivery  the received message that is ready to be consumed.
+         */
+        void route(@Nullable Object key, int partition, @NotNull Delivery delivery);
+    }
+
+    /**
+     * A received message that is ready to be consumed.
+     */
+    @FunctionalInterface
+    interface Delivery {
+
+        /**
+         * Consume the received message.
+         *
+         * @throws IOException if any error occurs in this operation.
+         */
+        void deliver() throws IOException;
+    }
+
+    /**
+     * Cache interface to store message IDs with certain delay.
+     */
+    public static abstract class Cache {
+
+        // Shared by every cache, so two caches never generate the same sequence even with the same node
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        // Random per cache, so multiple messengers in the same process don't reject each other messages
+        private final int node = newNode();
+
+        private static int newNode() {
+            int node;
+            do {
+                node = new SecureRandom().nextInt();
+            } while (node == 0);
+            return node;
+        }
+
+        /**
+         * Create a cache with provided expiration.<br>
+         * This method try to find the best available implementation and uses it.
+         *
+         * @param duration the length of time after a message ID is automatically removed.
+         * @param unit     the unit that {@code duration} is expressed in.
+         * @return         a newly generate cache instance.
+         */
+        @NotNull
+        public static Cache of(long duration, @NotNull TimeUnit unit) {
+            try {
+                Class.forName("com.github.benmanes.caffeine.cache.Caffeine");
+                return Class.forName("com.saicone.delivery4j.cache.CaffeineCache")
                         .asSubclass(Cache.class)
                         .getDeclaredConstructor(long.class, TimeUnit.class)
                         .newInstance(duration, unit);
             } catch (Throwable ignored) { }
 
-            return new Cache() {
-                private final Map<Integer, Long> cache = new HashMap<>();
-                private final long millis = unit.toMillis(duration);
-
-                @Override
-                protected void save(int id) {
-                    final long currentTime = System.currentTimeMillis();
-                    if (id < 1999) { // 20%
-                        final long time = currentTime - this.millis;
-                        this.cache.entrySet().removeIf(entry -> entry.getValue() <= time);
-                    }
-                    this.cache.put(id, currentTime);
-                }
-
-                @Override
-                public boolean contains(int id) {
-                    return this.cache.containsKey(id);
-                }
+            try {
+                Class.forName("com.google.common.cache.CacheBuilder");
+                return Class.forName("com.saicone.delivery4j.cache.GuavaCache")
+                        .asSubclass(Cache.class)
+                        .getDeclaredConstructor(long.class, TimeUnit.class)
+                        .newInstance(duration, unit);
+            } catch (Throwable ignored) { }
 
-                @Override
-                public void clear() {
-                    this.cache.clear();
-                }
-            };
+            return new GenerationalCache(duration, unit);
         }
 
         /**
@@ -357,7 +1641,29 @@ public class MessageChannel {
         public abstract boolean contains(int id);
 
         /**
-         * Generate message ID and save into cache.
+         * Save 64-bit message ID.<br>
+         * By default, the ID is folded into an int ID, override this method to save the exact ID.
+         *
+         * @param id the ID of the message to save.
+         */
+        protected void save(long id) {
+            save((int) (id ^ (id >>> 32)));
+        }
+
+        /**
+         * Check if the current cache contains the provided 64-bit message ID.<br>
+         * By default, the ID is folded into an int ID, override this method to check the exact ID.
+         *
+         * @param id the ID of the message.
+         * @return   true if the message is already saved, false otherwise.
+         */
+        public boolean contains(long id) {
+            return contains((int) (id ^ (id >>> 32)));
+        }
+
+        /**
+         * Generate message ID and save into cache.<br>
+         * This type of ID is only used by multi-line messages with plain lines, to keep compatibility with old versions.
          *
          * @return a message ID.
          */
@@ -367,9 +1673,179 @@ public class MessageChannel {
             return id;
         }
 
+        /**
+         * Get the random node ID that identifies the current cache on 64-bit message IDs.
+         *
+         * @return a non-zero node ID.
+         */
+        public int getNode() {
+            return node;
+        }
+
+        /**
+         * Generate the next 64-bit message ID from the current cache.<br>
+         * The ID is made of the cache node ID in the high 32 bits and a sequence number
+         * in the low 32 bits, so it's unique across caches without saving it into cache.
+         *
+         * @return a message ID.
+         */
+        public long next() {
+            return ((long) this.node << 32) | (SEQUENCE.incrementAndGet() & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Accept the provided 64-bit message ID from received message.<br>
+         * Any message from the current cache is rejected by comparing its node ID, and any
+         * message from other cache is rejected if its ID was already accepted.
+         *
+         * @param id the ID of the received message.
+         * @return   true if the message should be consumed, false otherwise.
+         */
+        public boolean accept(long id) {
+            if (nodeOf(id) == this.node) {
+                return false;
+            }
+            if (contains(id)) {
+                return false;
+            }
+            save(id);
+            return true;
+        }
+
+        /**
+         * Get the node ID from provided 64-bit message ID.
+         *
+         * @param id the message ID.
+         * @return   a node ID.
+         */
+        public static int nodeOf(long id) {
+            return (int) (id >>> 32);
+        }
+
+        /**
+         * Get the current cache statistics.<br>
+         * By default, every value is unknown, cache implementations should override this method.
+         *
+         * @return a snapshot of cache statistics.
+         */
+        @NotNull
+        public Stats stats() {
+            return new Stats(-1, -1, -1, -1, -1, -1);
+        }
+
         /**
          * Clear the current cache instance values.
          */
         public abstract void clear();
+
+        /**
+         * Snapshot of cache statistics, any negative value means that is not supported by cache implementation.
+         */
+        public static final class Stats {
+
+            private final long size;
+            private final long saves;
+            private final long lookups;
+            private final long hits;
+            private final long evictions;
+            private final long memory;
+
+            /**
+             * Constructs a cache statistics snapshot.
+             *
+             * @param size      the number of saved IDs.
+             * @param saves     the number of saved IDs since cache creation.
+             * @param lookups   the number of checked IDs since cache creation.
+             * @param hits      the number of checked IDs that were already saved.
+             * @param evictions the number of removed IDs since cache creation.
+             * @param memory    the approximate memory used by cache in bytes.
+             */
+            public Stats(long size, long saves, long lookups, long hits, long evictions, long memory) {
+                this.size = size;
+                this.saves = saves;
+                this.lookups = lookups;
+                this.hits = hits;
+                this.evictions = evictions;
+                this.memory = memory;
+            }
+
+            /**
+             * Get the number of saved IDs.
+             *
+             * @return an ID count.
+             */
+            public long getSize() {
+                return size;
+            }
+
+            /**
+             * Get the number of saved IDs since cache creation.
+             *
+             * @return an ID count.
+             */
+            public long getSaves() {
+                return saves;
+            }
+
+            /**
+             * Get the number of checked IDs since cache creation.
+             *
+             * @return an ID count.
+             */
+            public long getLookups() {
+                return lookups;
+            }
+
+            /**
+             * Get the number of checked IDs that were already saved, in other words, suppressed messages.
+             *
+             * @return an ID count.
+             */
+            public long getHits() {
+                return hits;
+            }
+
+            /**
+             * Get the number of removed IDs since cache creation.
+             *
+             * @return an ID count.
+             */
+            public long getEvictions() {
+                return evictions;
+            }
+
+            /**
+             * Get the approximate memory used by cache.
+             *
+             * @return a size in bytes.
+             */
+            public long getMemory() {
+                return memory;
+            }
+
+            /**
+             * Get the ratio of checked IDs that were already saved.
+             *
+             * @return a hit rate between 0 and 1, or a negative value if unknown.
+             */
+            public double getHitRate() {
+                if (lookups < 0 || hits < 0) {
+                    return -1;
+                }
+                return lookups == 0 ? 0 : (double) hits / lookups;
+            }
+
+            @Override
+            public String toString() {
+                return "Stats{" +
+                        "size=" + size +
+                        ", saves=" + saves +
+                        ", lookups=" + lookups +
+                        ", hits=" + hits +
+                        ", evictions=" + evictions +
+                        ", memory=" + memory +
+                        '}';
+            }
+        }
     }
 }
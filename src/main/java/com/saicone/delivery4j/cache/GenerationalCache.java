@@ -0,0 +1,220 @@
+package com.saicone.delivery4j.cache;
+
+import com.saicone.delivery4j.MessageChannel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in message ID cache without any dependency.<br>
+ * The IDs are saved into a ring of generations, every generation is an open-addressing table
+ * of primitive longs that is written without locks, and a new generation is started once the
+ * current one gets old or full, so any expired ID is removed by dropping a whole generation
+ * instead of scanning every saved ID.<br>
+ * Every ID is kept at least for the provided expiration time.
+ *
+ * @author Rubenicos
+ */
+public class GenerationalCache extends MessageChannel.Cache {
+
+    private static final int SLICES = 4;
+    private static final int MIN_CAPACITY = 256;
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final long duration;
+    private final long slice;
+
+    private volatile Generation[] generations;
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a generational cache with provided expiration.
+     *
+     * @param duration the length of time after a message ID is automatically removed.
+     * @param unit     the unit that {@code duration} is expressed in.
+     */
+    public GenerationalCache(long duration, @NotNull TimeUnit unit) {
+        this.duration = unit.toNanos(duration);
+        this.slice = Math.max(TimeUnit.MILLISECONDS.toNanos(1), this.duration / SLICES);
+        this.generations = new Generation[] { new Generation(MIN_CAPACITY, System.nanoTime()) };
+    }
+
+    @Override
+    protected void save(int id) {
+        save((long) id);
+    }
+
+    @Override
+    protected void save(long id) {
+        this.saves.increment();
+        while (true) {
+            final Generation generation = this.generations[0];
+            if (System.nanoTime() - generation.created >= this.slice || !generation.add(id)) {
+                rotate(generation);
+            } else {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return contains((long) id);
+    }
+
+    @Override
+    public boolean contains(long id) {
+        this.lookups.increment();
+        final Generation[] generations = this.generations;
+        final long now = System.nanoTime();
+        for (int i = 0; i < generations.length; i++) {
+            // Every ID in a generation was saved before the next generation was created
+            if (i > 0 && now - generations[i - 1].created >= this.duration) {
+                break;
+            }
+            if (generations[i].contains(id)) {
+                this.hits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void rotate(@NotNull Generation current) {
+        final Generation[] generations = this.generations;
+        if (generations[0] != current) {
+            // Already rotated by other thread
+            return;
+        }
+        final long now = System.nanoTime();
+        int alive = 1;
+        while (alive < generations.length && now - generations[alive - 1].created < this.duration) {
+            alive++;
+        }
+        for (int i = alive; i < generations.length; i++) {
+            this.evictions.add(generations[i].size.get());
+        }
+        final Generation[] rotated = new Generation[alive + 1];
+        rotated[0] = new Generation(capacityFor(current.size.get()), now);
+        System.arraycopy(generations, 0, rotated, 1, rotated.length - 1);
+        this.generations = rotated;
+    }
+
+    private static int capacityFor(int size) {
+        // Keep the table under half load with the same amount of IDs
+        final int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, size * 2) - 1) << 1;
+        return Math.min(capacity, MAX_CAPACITY);
+    }
+
+    /**
+     * Get the number of saved IDs, including the IDs that are expired but not removed yet.
+     *
+     * @return an ID count.
+     */
+    public long size() {
+        long size = 0;
+        for (Generation generation : this.generations) {
+            size += generation.size.get();
+        }
+        return size;
+    }
+
+    /**
+     * Get the approximate memory used by saved IDs.
+     *
+     * @return a size in bytes.
+     */
+    public long memory() {
+        long memory = 0;
+        for (Generation generation : this.generations) {
+            memory += 64 + ((long) generation.keys.length() << 3);
+        }
+        return memory;
+    }
+
+    @Override
+    @NotNull
+    public Stats stats() {
+        return new Stats(size(), this.saves.sum(), this.lookups.sum(), this.hits.sum(), this.evictions.sum(), memory());
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.generations = new Generation[] { new Generation(MIN_CAPACITY, System.nanoTime()) };
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray keys;
+        private final int mask;
+        private final int threshold;
+        private final long created;
+        private final AtomicInteger size = new AtomicInteger();
+        private volatile boolean zero;
+
+        Generation(int capacity, long created) {
+            this.keys = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.threshold = capacity - (capacity >> 2);
+            this.created = created;
+        }
+
+        boolean add(long id) {
+            if (id == 0) {
+                this.zero = true;
+                return true;
+            }
+            if (this.size.get() >= this.threshold) {
+                return false;
+            }
+            int index = hash(id) & this.mask;
+            for (int i = 0; i <= this.mask; i++) {
+                final long key = this.keys.get(index);
+                if (key == id) {
+                    return true;
+                }
+                if (key == 0) {
+                    if (this.keys.compareAndSet(index, 0, id)) {
+                        this.size.incrementAndGet();
+                        return true;
+                    }
+                    // Lost the slot to other thread, check it again
+                    continue;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return false;
+        }
+
+        boolean contains(long id) {
+            if (id == 0) {
+                return this.zero;
+            }
+            int index = hash(id) & this.mask;
+            for (int i = 0; i <= this.mask; i++) {
+                final long key = this.keys.get(index);
+                if (key == id) {
+                    return true;
+                } else if (key == 0) {
+                    return false;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return false;
+        }
+
+        private static int hash(long id) {
+            id ^= id >>> 33;
+            id *= 0xff51afd7ed558ccdL;
+            id ^= id >>> 33;
+            return (int) id;
+        }
+    }
+}
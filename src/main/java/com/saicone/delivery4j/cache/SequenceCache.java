@@ -0,0 +1,222 @@
+package com.saicone.delivery4j.cache;
+
+import com.saicone.delivery4j.MessageChannel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message ID cache that suppress duplicated messages using a sliding window per origin node.<br>
+ * Every origin keeps its highest received sequence and a fixed bitset with the latest sequences,
+ * so memory usage depends on the number of sender nodes instead of message throughput, and
+ * any message older than the window is treated as duplicated.<br>
+ * This cache is suggested for brokers that may redeliver messages, like Kafka on rebalance,
+ * RabbitMQ on reconnect or SQL polling overlaps.<br>
+ * Int message IDs from plain multi-line messages are saved into a {@link GenerationalCache}.
+ *
+ * @author Rubenicos
+ */
+public class SequenceCache extends MessageChannel.Cache {
+
+    private final int window;
+    private final long timeout;
+    private final GenerationalCache legacy;
+    private final Map<Integer, Window> origins = new ConcurrentHashMap<>();
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a sequence cache with provided window size and origin expiration.
+     *
+     * @param window   the number of sequences to remember per origin, rounded up to a multiple of 64.
+     * @param duration the length of time after an inactive origin is removed.
+     * @param unit     the unit that {@code duration} is expressed in.
+     */
+    public SequenceCache(int window, long duration, @NotNull TimeUnit unit) {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window size must be positive");
+        }
+        this.window = ((window + 63) >>> 6) << 6;
+        this.timeout = unit.toNanos(duration);
+        this.legacy = new GenerationalCache(duration, unit);
+    }
+
+    /**
+     * Get the number of sequences remembered per origin.
+     *
+     * @return a window size.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Get the number of origin nodes that are currently tracked.
+     *
+     * @return an origin count.
+     */
+    public int getOrigins() {
+        return this.origins.size();
+    }
+
+    @Override
+    protected void save(int id) {
+        this.legacy.save(id);
+    }
+
+    @Override
+    protected void save(long id) {
+        this.saves.increment();
+        window(nodeOf(id)).accept((int) id);
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return this.legacy.contains(id);
+    }
+
+    @Override
+    public boolean contains(long id) {
+        this.lookups.increment();
+        final Window window = this.origins.get(nodeOf(id));
+        if (window != null && window.contains((int) id)) {
+            this.hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean accept(long id) {
+        final int node = nodeOf(id);
+        if (node == getNode()) {
+            return false;
+        }
+        this.lookups.increment();
+        if (window(node).accept((int) id)) {
+            this.saves.increment();
+            return true;
+        }
+        this.hits.increment();
+        return false;
+    }
+
+    @NotNull
+    private Window window(int node) {
+        Window window = this.origins.get(node);
+        if (window == null) {
+            expire();
+            window = this.origins.computeIfAbsent(node, key -> new Window(this.window));
+        }
+        return window;
+    }
+
+    private void expire() {
+        final long now = System.nanoTime();
+        final Iterator<Window> iterator = this.origins.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().time >= this.timeout) {
+                iterator.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The size and evictions of this cache are counted as origin nodes plus int message IDs.
+     *
+     * @return a snapshot of cache statistics.
+     */
+    @Override
+    @NotNull
+    public Stats stats() {
+        final Stats legacy = this.legacy.stats();
+        final long windowMemory = 64 + (this.window >>> 3);
+        return new Stats(
+                this.origins.size() + legacy.getSize(),
+                this.saves.sum() + legacy.getSaves(),
+                this.lookups.sum() + legacy.getLookups(),
+                this.hits.sum() + legacy.getHits(),
+                this.evictions.sum() + legacy.getEvictions(),
+                this.origins.size() * windowMemory + legacy.getMemory()
+        );
+    }
+
+    @Override
+    public void clear() {
+        this.origins.clear();
+        this.legacy.clear();
+    }
+
+    private static final class Window {
+
+        private static final long RESET_DISTANCE = 1L << 31;
+
+        private final long[] bits;
+        private final int size;
+        private long highest = -1;
+        private volatile long time = System.nanoTime();
+
+        Window(int size) {
+            this.bits = new long[size >>> 6];
+            this.size = size;
+        }
+
+        synchronized boolean accept(int sequence) {
+            final long seq = sequence & 0xFFFFFFFFL;
+            // A sequence far behind the highest one means the sender sequence wrapped around
+            if (seq > this.highest || this.highest - seq > RESET_DISTANCE) {
+                final long shift = seq - this.highest;
+                if (this.highest < 0 || shift <= 0 || shift >= this.size) {
+                    Arrays.fill(this.bits, 0L);
+                } else {
+                    for (long s = this.highest + 1; s < seq; s++) {
+                        clear(s);
+                    }
+                }
+                this.highest = seq;
+                set(seq);
+                this.time = System.nanoTime();
+                return true;
+            }
+            if (this.highest - seq >= this.size || get(seq)) {
+                return false;
+            }
+            set(seq);
+            this.time = System.nanoTime();
+            return true;
+        }
+
+        synchronized boolean contains(int sequence) {
+            final long seq = sequence & 0xFFFFFFFFL;
+            if (this.highest < 0 || seq > this.highest || this.highest - seq > RESET_DISTANCE) {
+                return false;
+            }
+            return this.highest - seq >= this.size || get(seq);
+        }
+
+        private boolean get(long seq) {
+            final int index = (int) (seq % this.size);
+            return (this.bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        private void set(long seq) {
+            final int index = (int) (seq % this.size);
+            this.bits[index >>> 6] |= 1L << index;
+        }
+
+        private void clear(long seq) {
+            final int index = (int) (seq % this.size);
+            this.bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+}
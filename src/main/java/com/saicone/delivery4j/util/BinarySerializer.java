@@ -0,0 +1,313 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary serializer for record-like objects.<br>
+ * Every non-static and non-transient field is written in a deterministic order, the component
+ * order for Java records and the field name order for any other class. Primitive fields are
+ * written without any type information and any other field is written as tagged value, so it
+ * supports boxed primitives, Strings, UUIDs, enums, byte arrays and collections of those values.<br>
+ * Every object starts with a hash of its field names and types, so data written by a different
+ * version of the type fails to deserialize instead of being read into the wrong fields.<br>
+ * The objects are created back using the constructor that accept all the fields in
+ * declaration order, like the canonical constructor of Java records.
+ *
+ * @author Rubenicos
+ *
+ * @param <T> the object type to serialize.
+ */
+public class BinarySerializer<T> implements MessageSerializer<T> {
+
+    private static final Map<Class<?>, BinarySerializer<?>> SERIALIZERS = new ConcurrentHashMap<>();
+
+    private static final Method IS_RECORD;
+    private static final Method GET_RECORD_COMPONENTS;
+    private static final Method GET_COMPONENT_NAME;
+
+    static {
+        // Records are only available on Java 16 and upper
+        Method isRecord = null;
+        Method getRecordComponents = null;
+        Method getComponentName = null;
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+            getRecordComponents = Class.class.getMethod("getRecordComponents");
+            getComponentName = Class.forName("java.lang.reflect.RecordComponent").getMethod("getName");
+        } catch (ReflectiveOperationException ignored) { }
+        IS_RECORD = isRecord;
+        GET_RECORD_COMPONENTS = getRecordComponents;
+        GET_COMPONENT_NAME = getComponentName;
+    }
+
+    private final Class<T> type;
+    private final Property[] properties;
+    private final int[] positions;
+    private final int schema;
+    private final MethodHandle constructor;
+
+    /**
+     * Get a binary serializer for provided type.<br>
+     * The serializers are created once per type and reused.
+     *
+     * @param type the object type.
+     * @return     a binary serializer for the provided type.
+     * @param <T>  the object type to serialize.
+     * @throws IllegalArgumentException if the provided type doesn't have a constructor that accept all its fields.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <T> BinarySerializer<T> of(@NotNull Class<T> type) {
+        return (BinarySerializer<T>) SERIALIZERS.computeIfAbsent(type, key -> new BinarySerializer<>(key));
+    }
+
+    /**
+     * Constructs a binary serializer for provided type.
+     *
+     * @param type the object type.
+     * @throws IllegalArgumentException if the provided type doesn't have a constructor that accept all its fields.
+     */
+    public BinarySerializer(@NotNull Class<T> type) {
+        this.type = type;
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final List<Field> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+            fields.add(field);
+        }
+
+        // Wire order
+        final List<Field> ordered = new ArrayList<>(fields);
+        final List<String> components = getRecordComponents(type);
+        if (components != null) {
+            ordered.sort(Comparator.comparingInt(field -> components.indexOf(field.getName())));
+            fields.sort(Comparator.comparingInt(field -> components.indexOf(field.getName())));
+        } else {
+            ordered.sort(Comparator.comparing(Field::getName));
+        }
+
+        this.properties = new Property[ordered.size()];
+        this.positions = new int[ordered.size()];
+        int schema = 1;
+        for (int i = 0; i < this.properties.length; i++) {
+            final Field field = ordered.get(i);
+            try {
+                field.setAccessible(true);
+                this.properties[i] = new Property(field, lookup.unreflectGetter(field));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalArgumentException("Cannot access field '" + field.getName() + "' from " + type.getName(), e);
+            }
+            this.positions[i] = fields.indexOf(field);
+            schema = 31 * schema + (field.getName() + ':' + field.getType().getName()).hashCode();
+        }
+        this.schema = schema;
+
+        final Class<?>[] types = new Class<?>[fields.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = fields.get(i).getType();
+        }
+        try {
+            final Constructor<T> constructor = type.getDeclaredConstructor(types);
+            constructor.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class, types))
+                    .asSpreader(Object[].class, types.length);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("The type " + type.getName() + " doesn't have a constructor with the parameters " + Arrays.toString(types), e);
+        }
+    }
+
+    @Nullable
+    private static List<String> getRecordComponents(@NotNull Class<?> type) {
+        if (IS_RECORD == null) {
+            return null;
+        }
+        try {
+            if (!(boolean) IS_RECORD.invoke(type)) {
+                return null;
+            }
+            final Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+            final List<String> names = new ArrayList<>(components.length);
+            for (Object component : components) {
+                names.add((String) GET_COMPONENT_NAME.invoke(component));
+            }
+            return names;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the object type.
+     *
+     * @return a class type.
+     */
+    @NotNull
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public void serialize(@NotNull BufferOutput out, @NotNull T object) throws IOException {
+        try {
+            out.writeInt(this.schema);
+            for (Property property : this.properties) {
+                property.write(out, object);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException("Cannot serialize object of type " + this.type.getName(), t);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public @NotNull T deserialize(@NotNull ByteBuffer in) throws IOException {
+        final Object[] args = new Object[this.properties.length];
+        try {
+            final int schema = in.getInt();
+            if (schema != this.schema) {
+                throw new IOException("The data doesn't match the fields of type " + this.type.getName() + ", expected schema " + this.schema + " but got " + schema);
+            }
+            for (int i = 0; i < args.length; i++) {
+                args[this.positions[i]] = this.properties[i].read(in);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Cannot deserialize object of type " + this.type.getName(), e);
+        }
+        try {
+            final Object object = this.constructor.invokeExact(args);
+            return (T) object;
+        } catch (Throwable t) {
+            throw new IOException("Cannot create object of type " + this.type.getName(), t);
+        }
+    }
+
+    private static final class Property {
+
+        private final String name;
+        private final Class<?> type;
+        private final char kind;
+        private final MethodHandle getter;
+
+        Property(@NotNull Field field, @NotNull MethodHandle getter) {
+            this.name = field.getName();
+            this.type = field.getType();
+            if (this.type.isPrimitive()) {
+                // Keep primitive return types to avoid boxing on write
+                this.kind = MethodType.methodType(this.type).toMethodDescriptorString().charAt(2);
+                this.getter = getter.asType(MethodType.methodType(this.type, Object.class));
+            } else {
+                this.kind = 'L';
+                this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            }
+        }
+
+        void write(@NotNull BufferOutput out, @NotNull Object object) throws Throwable {
+            switch (this.kind) {
+                case 'Z':
+                    out.writeBoolean((boolean) this.getter.invokeExact(object));
+                    break;
+                case 'B':
+                    out.writeByte((byte) this.getter.invokeExact(object));
+                    break;
+                case 'S':
+                    out.writeZigZagInt((short) this.getter.invokeExact(object));
+                    break;
+                case 'C':
+                    out.writeChar((char) this.getter.invokeExact(object));
+                    break;
+                case 'I':
+                    out.writeZigZagInt((int) this.getter.invokeExact(object));
+                    break;
+                case 'J':
+                    out.writeZigZagLong((long) this.getter.invokeExact(object));
+                    break;
+                case 'F':
+                    out.writeFloat((float) this.getter.invokeExact(object));
+                    break;
+                case 'D':
+                    out.writeDouble((double) this.getter.invokeExact(object));
+                    break;
+                default:
+                    TaggedValues.write(out, (Object) this.getter.invokeExact(object));
+                    break;
+            }
+        }
+
+        @Nullable
+        Object read(@NotNull ByteBuffer in) throws IOException {
+            switch (this.kind) {
+                case 'Z':
+                    return in.get() != 0;
+                case 'B':
+                    return in.get();
+                case 'S':
+                    return (short) Buffers.readZigZagInt(in);
+                case 'C':
+                    return in.getChar();
+                case 'I':
+                    return Buffers.readZigZagInt(in);
+                case 'J':
+                    return Buffers.readZigZagLong(in);
+                case 'F':
+                    return in.getFloat();
+                case 'D':
+                    return in.getDouble();
+                default:
+                    return convert(TaggedValues.read(in));
+            }
+        }
+
+        @Nullable
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object convert(@Nullable Object value) throws IOException {
+            if (value == null || this.type.isInstance(value)) {
+                return value;
+            }
+            if (value instanceof Number) {
+                final Number number = (Number) value;
+                if (this.type == Short.class) {
+                    return number.shortValue();
+                } else if (this.type == Byte.class) {
+                    return number.byteValue();
+                }
+            } else if (value instanceof String) {
+                final String s = (String) value;
+                if (this.type == Character.class && s.length() == 1) {
+                    return s.charAt(0);
+                } else if (this.type.isEnum()) {
+                    return Enum.valueOf((Class<? extends Enum>) this.type, s);
+                }
+            } else if (value instanceof Collection && Set.class.isAssignableFrom(this.type) && this.type.isAssignableFrom(LinkedHashSet.class)) {
+                return new LinkedHashSet<>((Collection<?>) value);
+            }
+            throw new IOException("Cannot convert " + value.getClass().getName() + " into " + this.type.getName() + " for field '" + this.name + "'");
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Growable output that write data into a heap byte buffer.<br>
+ * If a {@link BufferPool} is provided, the underlying buffers are acquired from pool and
+ * released back once the output is closed.
+ *
+ * @author Rubenicos
+ */
+public class BufferOutput implements AutoCloseable {
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructs a buffer output with provided initial capacity.
+     *
+     * @param pool     the pool to acquire buffers from, null to allocate them.
+     * @param capacity the initial capacity.
+     */
+    public BufferOutput(@Nullable BufferPool pool, int capacity) {
+        this.pool = pool;
+        this.buffer = pool == null ? ByteBuffer.allocate(capacity) : pool.acquire(capacity);
+    }
+
+    /**
+     * Get the current underlying buffer.<br>
+     * Take in count the buffer can be replaced if the output needs to grow.
+     *
+     * @return a byte buffer in write mode.
+     */
+    @NotNull
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the number of bytes written into this output.
+     *
+     * @return a byte count.
+     */
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Ensure the current output has at least the given remaining bytes.
+     *
+     * @param remaining the minimum remaining bytes.
+     * @return          the underlying buffer with enough space.
+     */
+    @NotNull
+    public ByteBuffer ensure(int remaining) {
+        if (this.buffer.remaining() < remaining) {
+            if (this.pool == null) {
+                final ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.buffer.position() + remaining, this.buffer.capacity() << 1));
+                bigger.put(this.buffer.flip());
+                this.buffer = bigger;
+            } else {
+                this.buffer = this.pool.ensureRemaining(this.buffer, remaining);
+            }
+        }
+        return this.buffer;
+    }
+
+    /**
+     * Write a single byte.
+     *
+     * @param b the byte to write.
+     */
+    public void writeByte(int b) {
+        ensure(1).put((byte) b);
+    }
+
+    /**
+     * Write a boolean as single byte.
+     *
+     * @param b the boolean to write.
+     */
+    public void writeBoolean(boolean b) {
+        ensure(1).put(b ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Write a two-byte short.
+     *
+     * @param s the short to write.
+     */
+    public void writeShort(int s) {
+        ensure(2).putShort((short) s);
+    }
+
+    /**
+     * Write a two-byte char.
+     *
+     * @param c the char to write.
+     */
+    public void writeChar(char c) {
+        ensure(2).putChar(c);
+    }
+
+    /**
+     * Write a four-byte int.
+     *
+     * @param i the int to write.
+     */
+    public void writeInt(int i) {
+        ensure(4).putInt(i);
+    }
+
+    /**
+     * Write an eight-byte long.
+     *
+     * @param l the long to write.
+     */
+    public void writeLong(long l) {
+        ensure(8).putLong(l);
+    }
+
+    /**
+     * Write a four-byte float.
+     *
+     * @param f the float to write.
+     */
+    public void writeFloat(float f) {
+        ensure(4).putFloat(f);
+    }
+
+    /**
+     * Write an eight-byte double.
+     *
+     * @param d the double to write.
+     */
+    public void writeDouble(double d) {
+        ensure(8).putDouble(d);
+    }
+
+    /**
+     * Write an unsigned variable-length int, using 1 to 5 bytes.
+     *
+     * @param i the int to write.
+     */
+    public void writeVarInt(int i) {
+        final ByteBuffer buffer = ensure(5);
+        while ((i & ~0x7F) != 0) {
+            buffer.put((byte) ((i & 0x7F) | 0x80));
+            i >>>= 7;
+        }
+        buffer.put((byte) i);
+    }
+
+    /**
+     * Write an unsigned variable-length long, using 1 to 10 bytes.
+     *
+     * @param l the long to write.
+     */
+    public void writeVarLong(long l) {
+        final ByteBuffer buffer = ensure(10);
+        while ((l & ~0x7FL) != 0) {
+            buffer.put((byte) ((l & 0x7F) | 0x80));
+            l >>>= 7;
+        }
+        buffer.put((byte) l);
+    }
+
+    /**
+     * Write a signed variable-length int using zig-zag encoding,
+     * so small negative numbers also use a few bytes.
+     *
+     * @param i the int to write.
+     */
+    public void writeZigZagInt(int i) {
+        writeVarInt((i << 1) ^ (i >> 31));
+    }
+
+    /**
+     * Write a signed variable-length long using zig-zag encoding,
+     * so small negative numbers also use a few bytes.
+     *
+     * @param l the long to write.
+     */
+    public void writeZigZagLong(long l) {
+        writeVarLong((l << 1) ^ (l >> 63));
+    }
+
+    /**
+     * Write the provided bytes without length prefix.
+     *
+     * @param bytes the bytes to write.
+     */
+    public void write(byte[] bytes) {
+        ensure(bytes.length).put(bytes);
+    }
+
+    /**
+     * Write the remaining bytes of provided buffer without length prefix.
+     *
+     * @param src the buffer to write.
+     */
+    public void write(@NotNull ByteBuffer src) {
+        ensure(src.remaining()).put(src);
+    }
+
+    /**
+     * Write the provided bytes with a variable-length prefix.
+     *
+     * @param bytes the bytes to write.
+     */
+    public void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        write(bytes);
+    }
+
+    /**
+     * Write a String as UTF-8 bytes with a variable-length prefix.<br>
+     * The String is encoded directly into buffer without any intermediate array and
+     * without length limit.
+     *
+     * @param s the String to write.
+     */
+    public void writeString(@NotNull String s) {
+        final int utflen = Buffers.utf8Length(s);
+        writeVarInt(utflen);
+        Buffers.writeUtf8(ensure(utflen), s);
+    }
+
+    /**
+     * Copy the written bytes into a newly-allocated byte array.
+     *
+     * @return a byte array with the written bytes.
+     */
+    public byte[] toByteArray() {
+        final byte[] bytes = new byte[this.buffer.position()];
+        this.buffer.duplicate().flip().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Release the underlying buffer into the pool, if exists.<br>
+     * The output must not be used after this method is called.
+     */
+    @Override
+    public void close() {
+        if (this.pool != null && this.buffer != null) {
+            this.pool.release(this.buffer);
+        }
+        this.buffer = null;
+    }
+}
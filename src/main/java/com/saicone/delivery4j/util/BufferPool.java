@@ -0,0 +1,163 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-local pool of reusable heap byte buffers grouped by power-of-two size classes.<br>
+ * Every thread keeps at most one buffer per size class, and any buffer bigger than the
+ * maximum retained size is never stored, so the memory held by each thread is bounded.
+ *
+ * @author Rubenicos
+ */
+public class BufferPool {
+
+    /**
+     * Shared buffer pool used by default on message encoding.<br>
+     * The buffers are retained from 256 bytes up to 64 KB.
+     */
+    public static final BufferPool SHARED = new BufferPool(256, 64 * 1024);
+
+    private final int minCapacity;
+    private final int maxRetained;
+    private final int minShift;
+    private final ThreadLocal<ByteBuffer[]> buffers;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a buffer pool with provided size limits.<br>
+     * Both limits are rounded up to the next power of two.
+     *
+     * @param minCapacity the capacity of the smallest size class.
+     * @param maxRetained the capacity of the biggest buffer that can be retained by each thread.
+     */
+    public BufferPool(int minCapacity, int maxRetained) {
+        if (minCapacity < 1 || maxRetained < minCapacity) {
+            throw new IllegalArgumentException("Invalid buffer pool limits: " + minCapacity + " to " + maxRetained);
+        }
+        this.minCapacity = ceilPowerOfTwo(minCapacity);
+        this.maxRetained = ceilPowerOfTwo(maxRetained);
+        this.minShift = Integer.numberOfTrailingZeros(this.minCapacity);
+        final int classes = Integer.numberOfTrailingZeros(this.maxRetained) - this.minShift + 1;
+        this.buffers = ThreadLocal.withInitial(() -> new ByteBuffer[classes]);
+    }
+
+    private static int ceilPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * Get the capacity of the smallest size class.
+     *
+     * @return a buffer capacity.
+     */
+    public int getMinCapacity() {
+        return minCapacity;
+    }
+
+    /**
+     * Get the capacity of the biggest buffer that can be retained by each thread.
+     *
+     * @return a buffer capacity.
+     */
+    public int getMaxRetained() {
+        return maxRetained;
+    }
+
+    /**
+     * Get the number of buffer requests that were served with a pooled buffer.
+     *
+     * @return a pool hits count.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of buffer requests that required a new buffer allocation.
+     *
+     * @return a pool misses count.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Reset the pool hits and misses counters.
+     */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private int index(int capacity) {
+        if (capacity <= this.minCapacity) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - this.minShift;
+    }
+
+    /**
+     * Acquire a cleared buffer with at least the provided capacity.<br>
+     * The buffer must be given back using {@link #release(ByteBuffer)} once it's no longer used.
+     *
+     * @param capacity the minimum capacity.
+     * @return         a buffer ready to be written.
+     */
+    @NotNull
+    public ByteBuffer acquire(int capacity) {
+        if (capacity > this.maxRetained) {
+            misses.increment();
+            return ByteBuffer.allocate(capacity);
+        }
+        final int index = index(capacity);
+        final ByteBuffer[] array = this.buffers.get();
+        final ByteBuffer buffer = array[index];
+        if (buffer == null) {
+            misses.increment();
+            return ByteBuffer.allocate(this.minCapacity << index);
+        }
+        array[index] = null;
+        hits.increment();
+        return buffer.clear();
+    }
+
+    /**
+     * Ensure the provided buffer has at least the given remaining bytes.<br>
+     * If a bigger buffer is required, the written bytes are copied into a new
+     * acquired buffer and the old one is released into the pool.
+     *
+     * @param buffer    the buffer that is being written.
+     * @param remaining the minimum remaining bytes.
+     * @return          the same buffer if has enough space, a bigger buffer otherwise.
+     */
+    @NotNull
+    public ByteBuffer ensureRemaining(@NotNull ByteBuffer buffer, int remaining) {
+        if (buffer.remaining() >= remaining) {
+            return buffer;
+        }
+        final int required = buffer.position() + remaining;
+        final ByteBuffer bigger = acquire(Math.max(required, buffer.capacity() << 1));
+        bigger.put(buffer.flip());
+        release(buffer);
+        return bigger;
+    }
+
+    /**
+     * Release the provided buffer into the pool, making it available to be acquired again by the current thread.<br>
+     * Buffers that doesn't match any size class are discarded.
+     *
+     * @param buffer the buffer to release.
+     */
+    public void release(@NotNull ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (capacity > this.maxRetained || capacity < this.minCapacity || Integer.bitCount(capacity) != 1 || !buffer.hasArray() || buffer.isReadOnly()) {
+            return;
+        }
+        this.buffers.get()[index(capacity)] = buffer;
+    }
+}
@@ -0,0 +1,387 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility class to read and write message data directly into {@link ByteBuffer} objects.<br>
+ * Strings with a two-byte length prefix use the same modified UTF-8 format from {@link java.io.DataOutput#writeUTF(String)},
+ * so the resulting bytes are compatible with regular Java data streams, while Strings with a variable-length
+ * prefix use standard UTF-8 without any length limit.
+ *
+ * @author Rubenicos
+ */
+public final class Buffers {
+
+    private Buffers() {
+    }
+
+    /**
+     * Get the length of provided String encoded as modified UTF-8.
+     *
+     * @param s the String to measure.
+     * @return  the number of bytes required to write the String, without the length prefix.
+     */
+    public static int utfLength(@NotNull String s) {
+        final int length = s.length();
+        int utflen = length;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x80 || c == 0) {
+                utflen += (c >= 0x800) ? 2 : 1;
+            }
+        }
+        return utflen;
+    }
+
+    /**
+     * Write the provided String into buffer as modified UTF-8 with a two-byte length prefix.
+     *
+     * @param buffer the buffer to write into.
+     * @param s      the String to write.
+     * @param utflen the String length encoded as modified UTF-8, previously calculated with {@link #utfLength(String)}.
+     * @throws UTFDataFormatException if the encoded String is longer than 65535 bytes.
+     */
+    public static void writeUTF(@NotNull ByteBuffer buffer, @NotNull String s, int utflen) throws UTFDataFormatException {
+        if (utflen > 0xFFFF) {
+            throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+        }
+        buffer.putShort((short) utflen);
+        final int length = s.length();
+        if (utflen == length) {
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) s.charAt(i));
+            }
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80 && c != 0) {
+                buffer.put((byte) c);
+            } else if (c >= 0x800) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Write the provided String into buffer as modified UTF-8 with a two-byte length prefix,
+     * the String is encoded in a single pass and the length prefix is written after.<br>
+     * The buffer must have at least {@code 2 + s.length() * 3} remaining bytes.
+     *
+     * @param buffer the buffer to write into.
+     * @param s      the String to write.
+     * @throws UTFDataFormatException if the encoded String is longer than 65535 bytes.
+     */
+    public static void writeUTF(@NotNull ByteBuffer buffer, @NotNull String s) throws UTFDataFormatException {
+        final int start = buffer.position();
+        buffer.position(start + 2);
+        final int length = s.length();
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80 && c != 0) {
+                buffer.put((byte) c);
+            } else if (c >= 0x800) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        final int utflen = buffer.position() - start - 2;
+        if (utflen > 0xFFFF) {
+            buffer.position(start);
+            throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+        }
+        buffer.putShort(start, (short) utflen);
+    }
+
+    /**
+     * Get the length of provided String encoded as standard UTF-8.<br>
+     * Unpaired surrogates are counted as a single replacement byte, like {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @param s the String to measure.
+     * @return  the number of bytes required to write the String, without the length prefix.
+     */
+    public static int utf8Length(@NotNull String s) {
+        final int length = s.length();
+        int i = 0;
+        while (i < length && s.charAt(i) < 0x80) {
+            i++;
+        }
+        int utflen = length;
+        for (; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                utflen += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // Four bytes for two chars
+                utflen += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                utflen += 2;
+            }
+        }
+        return utflen;
+    }
+
+    /**
+     * Write the provided String into buffer as standard UTF-8 without any length prefix.<br>
+     * The leading ASCII characters are copied directly into the buffer array, so ASCII Strings
+     * are written without any multi-byte check.
+     *
+     * @param buffer the buffer to write into, with at least {@link #utf8Length(String)} remaining bytes.
+     * @param s      the String to write.
+     */
+    public static void writeUtf8(@NotNull ByteBuffer buffer, @NotNull String s) {
+        final int length = s.length();
+        int i = 0;
+        if (buffer.hasArray()) {
+            final byte[] array = buffer.array();
+            final int offset = buffer.arrayOffset() + buffer.position();
+            char c;
+            while (i < length && (c = s.charAt(i)) < 0x80) {
+                array[offset + i] = (byte) c;
+                i++;
+            }
+            buffer.position(buffer.position() + i);
+        }
+        for (; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buffer.put((byte) (0xF0 | (cp >> 18)));
+                    buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (cp & 0x3F)));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Read a modified UTF-8 String with a two-byte length prefix from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded String.
+     * @throws UTFDataFormatException if the bytes do not represent a valid modified UTF-8 encoding of a String.
+     */
+    @NotNull
+    public static String readUTF(@NotNull ByteBuffer buffer) throws UTFDataFormatException {
+        final int utflen = buffer.getShort() & 0xFFFF;
+        if (utflen > buffer.remaining()) {
+            throw new UTFDataFormatException("malformed input: expected " + utflen + " bytes, but " + buffer.remaining() + " remaining");
+        }
+        final int start = buffer.position();
+        boolean ascii = true;
+        for (int i = start; i < start + utflen; i++) {
+            final byte b = buffer.get(i);
+            if (b <= 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            final String s;
+            if (buffer.hasArray()) {
+                s = new String(buffer.array(), buffer.arrayOffset() + start, utflen, StandardCharsets.ISO_8859_1);
+            } else {
+                final byte[] bytes = new byte[utflen];
+                buffer.duplicate().get(bytes);
+                s = new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+            buffer.position(start + utflen);
+            return s;
+        }
+
+        final char[] chars = new char[utflen];
+        final int end = start + utflen;
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            final int c = buffer.get(i) & 0xFF;
+            switch (c >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+                    // 0xxxxxxx
+                    i++;
+                    chars[count++] = (char) c;
+                    break;
+                case 12: case 13:
+                    // 110x xxxx   10xx xxxx
+                    i += 2;
+                    if (i > end) {
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    }
+                    final int c2 = buffer.get(i - 1);
+                    if ((c2 & 0xC0) != 0x80) {
+                        throw new UTFDataFormatException("malformed input around byte " + (i - start));
+                    }
+                    chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                    break;
+                case 14:
+                    // 1110 xxxx  10xx xxxx  10xx xxxx
+                    i += 3;
+                    if (i > end) {
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    }
+                    final int b2 = buffer.get(i - 2);
+                    final int b3 = buffer.get(i - 1);
+                    if (((b2 & 0xC0) != 0x80) || ((b3 & 0xC0) != 0x80)) {
+                        throw new UTFDataFormatException("malformed input around byte " + (i - 1 - start));
+                    }
+                    chars[count++] = (char) (((c & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+                    break;
+                default:
+                    // 10xx xxxx,  1111 xxxx
+                    throw new UTFDataFormatException("malformed input around byte " + (i - start));
+            }
+        }
+        buffer.position(end);
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Read an unsigned variable-length int from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded int.
+     * @throws IllegalArgumentException if the variable-length int is longer than 5 bytes.
+     */
+    public static int readVarInt(@NotNull ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Variable-length int is too big");
+    }
+
+    /**
+     * Read an unsigned variable-length long from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded long.
+     * @throws IllegalArgumentException if the variable-length long is longer than 10 bytes.
+     */
+    public static long readVarLong(@NotNull ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Variable-length long is too big");
+    }
+
+    /**
+     * Read a signed variable-length int encoded with zig-zag encoding from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded int.
+     */
+    public static int readZigZagInt(@NotNull ByteBuffer buffer) {
+        final int value = readVarInt(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read a signed variable-length long encoded with zig-zag encoding from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded long.
+     */
+    public static long readZigZagLong(@NotNull ByteBuffer buffer) {
+        final long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read an UTF-8 String with a variable-length prefix from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded String.
+     */
+    @NotNull
+    public static String readString(@NotNull ByteBuffer buffer) {
+        final int length = readVarInt(buffer);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final String s;
+        if (buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    /**
+     * Read the provided number of bytes from buffer into a newly-allocated byte array.<br>
+     * The length is checked before allocating the array, since it usually comes from the wire.
+     *
+     * @param buffer the buffer to read from.
+     * @param length the number of bytes to read.
+     * @return       a byte array with the read bytes.
+     * @throws EOFException if the length is negative or bigger than the remaining buffer bytes.
+     */
+    public static byte[] readBytes(@NotNull ByteBuffer buffer, int length) throws EOFException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new EOFException("expected " + length + " bytes, but " + buffer.remaining() + " remaining");
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Convert the remaining bytes of provided buffer into byte array.<br>
+     * If the buffer is backed by an array that exactly matches its remaining bytes,
+     * the backing array is returned without any copy.
+     *
+     * @param buffer the buffer to convert.
+     * @return       a byte array that represent the remaining buffer bytes.
+     */
+    public static byte[] toArray(@NotNull ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
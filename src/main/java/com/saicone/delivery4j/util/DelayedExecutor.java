@@ -18,7 +18,7 @@ public interface DelayedExecutor<T> {
     /**
      * Delayed executor object that use Java method to execute tasks.<br>
      * Is NOT suggested to use this object due is not scalable and doesn't
-     * use any thread pool, make a better implementation instead.
+     * use any thread pool, use {@link ScheduledDelayedExecutor} instead.
      */
     DelayedExecutor<Thread> JAVA = new DelayedExecutor<>() {
         @Override
@@ -80,32 +80,49 @@ public interface Encryptor {
         final Cipher decryptMode = Cipher.getInstance(transformation);
         decryptMode.init(Cipher.DECRYPT_MODE, key);
         return new Encryptor() {
+            // Cipher instances are not thread-safe
+            private final Object encryptLock = new Object();
+            private final Object decryptLock = new Object();
             private Cipher encrypt = encryptMode;
             private Cipher decrypt = decryptMode;
 
             @Override
             public byte[] encrypt(@NotNull String input) {
-                try {
-                    return encrypt.doFinal(input.getBytes(charset));
-                } catch (Throwable t) {
+                return encryptBytes(input.getBytes(charset));
+            }
+
+            @Override
+            public byte[] encryptBytes(byte[] input) {
+                synchronized (encryptLock) {
                     try {
-                        encrypt = Cipher.getInstance(transformation);
-                        encrypt.init(Cipher.ENCRYPT_MODE, key);
-                    } catch (Exception ignored) { }
-                    throw new RuntimeException(t);
+                        return encrypt.doFinal(input);
+                    } catch (Throwable t) {
+                        try {
+                            encrypt = Cipher.getInstance(transformation);
+                            encrypt.init(Cipher.ENCRYPT_MODE, key);
+                        } catch (Exception ignored) { }
+                        throw new RuntimeException(t);
+                    }
                 }
             }
 
             @Override
             public @NotNull String decrypt(byte[] input) {
-                try {
-                    return new String(decrypt.doFinal(input), charset);
-                } catch (Throwable t) {
+                return new String(decryptBytes(input), charset);
+            }
+
+            @Override
+            public byte[] decryptBytes(byte[] input) {
+                synchronized (decryptLock) {
                     try {
-                        decrypt = Cipher.getInstance(transformation);
-                        decrypt.init(Cipher.DECRYPT_MODE, key);
-                    } catch (Exception ignored) { }
-                    throw new RuntimeException(t);
+                        return decrypt.doFinal(input);
+                    } catch (Throwable t) {
+                        try {
+                            decrypt = Cipher.getInstance(transformation);
+                            decrypt.init(Cipher.DECRYPT_MODE, key);
+                        } catch (Exception ignored) { }
+                        throw new RuntimeException(t);
+                    }
                 }
             }
         };
@@ -127,4 +144,26 @@ public interface Encryptor {
      */
     @NotNull
     String decrypt(byte[] input);
+
+    /**
+     * Encrypts the input byte array data.<br>
+     * By default, the bytes are mapped one-to-one into String characters and encrypted as String.
+     *
+     * @param input the byte array to encrypt.
+     * @return      an encrypted byte array.
+     */
+    default byte[] encryptBytes(byte[] input) {
+        return encrypt(new String(input, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Decrypts the input data and return itself as byte array.<br>
+     * By default, the data is decrypted as String and its characters are mapped one-to-one into bytes.
+     *
+     * @param input the byte array to decrypt.
+     * @return      a decrypted byte array.
+     */
+    default byte[] decryptBytes(byte[] input) {
+        return decrypt(input).getBytes(StandardCharsets.ISO_8859_1);
+    }
 }
@@ -0,0 +1,227 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded buffer to reassemble messages that were split into numbered fragments.<br>
+ * Incomplete messages are evicted once the timeout has passed since their first fragment,
+ * or when the buffer exceeds its maximum number of messages or bytes, the oldest messages
+ * are evicted first.
+ *
+ * @author Rubenicos
+ */
+public class FragmentAssembler {
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final long timeout;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>();
+    private long pendingBytes;
+
+    private long completed;
+    private long expired;
+    private long evicted;
+
+    /**
+     * Constructs a fragment assembler with provided limits.
+     *
+     * @param maxMessages the maximum number of incomplete messages.
+     * @param maxBytes    the maximum bytes of received fragments from incomplete messages.
+     * @param timeout     the maximum time to wait for the remaining fragments of a message.
+     * @param unit        the time unit of the timeout.
+     */
+    public FragmentAssembler(int maxMessages, long maxBytes, long timeout, @NotNull TimeUnit unit) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.timeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Add a fragment into the buffer.
+     *
+     * @param channel the channel name where the fragment come from.
+     * @param id      the message ID.
+     * @param index   the fragment index, starting from 0.
+     * @param count   the number of fragments of the message.
+     * @param data    the fragment data, only the remaining bytes are copied.
+     * @return        the reassembled message if the provided fragment was the last missing one, null otherwise.
+     */
+    @Nullable
+    public synchronized ByteBuffer add(@NotNull String channel, long id, int index, int count, @NotNull ByteBuffer data) {
+        if (count < 1 || index < 0 || index >= count) {
+            return null;
+        }
+        // The count comes from the wire, so a message that can never fit into the buffer is rejected
+        // before allocating its fragments, every fragment except the last one has the same size
+        if (count > this.maxBytes || (index < count - 1 && (long) (count - 1) * data.remaining() > this.maxBytes)) {
+            this.evicted++;
+            return null;
+        }
+        final long now = System.nanoTime();
+        expire(now);
+
+        final Key key = new Key(channel, id);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            entry = new Entry(count, now);
+            this.entries.put(key, entry);
+        } else if (entry.fragments.length != count) {
+            remove(key, entry);
+            this.evicted++;
+            return null;
+        }
+        if (entry.fragments[index] != null) {
+            // Duplicated fragment
+            return null;
+        }
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        entry.fragments[index] = bytes;
+        entry.received++;
+        entry.bytes += bytes.length;
+        this.pendingBytes += bytes.length;
+
+        if (entry.received == count) {
+            remove(key, entry);
+            this.completed++;
+            final ByteBuffer message = ByteBuffer.allocate((int) entry.bytes);
+            for (byte[] fragment : entry.fragments) {
+                message.put(fragment);
+            }
+            return message.flip();
+        }
+
+        // Evict the oldest messages until the buffer is under its limits
+        final Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+        while ((this.entries.size() > this.maxMessages || this.pendingBytes > this.maxBytes) && iterator.hasNext()) {
+            final Entry oldest = iterator.next().getValue();
+            iterator.remove();
+            this.pendingBytes -= oldest.bytes;
+            this.evicted++;
+        }
+        return null;
+    }
+
+    private void expire(long now) {
+        final Iterator<Entry> iterator = this.entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (now - entry.time < this.timeout) {
+                break;
+            }
+            iterator.remove();
+            this.pendingBytes -= entry.bytes;
+            this.expired++;
+        }
+    }
+
+    private void remove(@NotNull Key key, @NotNull Entry entry) {
+        this.entries.remove(key);
+        this.pendingBytes -= entry.bytes;
+    }
+
+    /**
+     * Remove every incomplete message from the buffer.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.pendingBytes = 0;
+    }
+
+    /**
+     * Get the number of incomplete messages that are waiting for fragments.<br>
+     * Expired messages are removed before counting.
+     *
+     * @return a message count.
+     */
+    public synchronized int getPending() {
+        expire(System.nanoTime());
+        return this.entries.size();
+    }
+
+    /**
+     * Get the bytes of received fragments from incomplete messages.
+     *
+     * @return a size in bytes.
+     */
+    public synchronized long getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    /**
+     * Get the number of messages that were completely reassembled.
+     *
+     * @return a message count.
+     */
+    public synchronized long getCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * Get the number of incomplete messages that were removed because the timeout has passed.
+     *
+     * @return a message count.
+     */
+    public synchronized long getExpired() {
+        return this.expired;
+    }
+
+    /**
+     * Get the number of incomplete messages that were removed to keep the buffer under its limits,
+     * or because any of its fragments was inconsistent.
+     *
+     * @return a message count.
+     */
+    public synchronized long getEvicted() {
+        return this.evicted;
+    }
+
+    private static final class Key {
+
+        private final String channel;
+        private final long id;
+
+        Key(@NotNull String channel, long id) {
+            this.channel = channel;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return id == key.id && channel.equals(key.channel);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * channel.hashCode() + Long.hashCode(id);
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[][] fragments;
+        private final long time;
+        private int received;
+        private long bytes;
+
+        Entry(int count, long time) {
+            this.fragments = new byte[count][];
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializer interface to write and read typed objects as message payloads.<br>
+ * Unlike multi-line messages, the objects are written directly as bytes, so
+ * consumers receive the same object type without parsing any String.
+ *
+ * @author Rubenicos
+ *
+ * @param <T> the object type to serialize.
+ */
+public interface MessageSerializer<T> {
+
+    /**
+     * Create a binary serializer for provided record-like type.<br>
+     * The type must declare a constructor that accept all its non-static and non-transient
+     * fields in declaration order, like Java records does.
+     *
+     * @param type the object type.
+     * @return     a binary serializer for the provided type.
+     * @param <T>  the object type to serialize.
+     * @see BinarySerializer
+     */
+    @NotNull
+    static <T> MessageSerializer<T> binary(@NotNull Class<T> type) {
+        return BinarySerializer.of(type);
+    }
+
+    /**
+     * Serializes the provided object into output.
+     *
+     * @param out    the output to write into.
+     * @param object the object to serialize.
+     * @throws IOException if the object cannot be serialized.
+     */
+    void serialize(@NotNull BufferOutput out, @NotNull T object) throws IOException;
+
+    /**
+     * Deserializes an object from the remaining bytes of provided buffer.
+     *
+     * @param in the buffer to read from.
+     * @return   a deserialized object.
+     * @throws IOException if the object cannot be deserialized.
+     */
+    @NotNull
+    T deserialize(@NotNull ByteBuffer in) throws IOException;
+}
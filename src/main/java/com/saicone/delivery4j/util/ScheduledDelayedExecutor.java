@@ -0,0 +1,332 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delayed executor backed by thread pools with daemon and named threads.<br>
+ * Delayed and repeatable tasks are timed by a small {@link ScheduledThreadPoolExecutor} and handed
+ * to a bounded timer pool once they are due, so blocking tasks like database polls never delay
+ * other timers, while immediate tasks are executed by a cached pool that reuse idle threads, so
+ * long-running tasks like broker listeners never hold the threads of scheduled ones.<br>
+ * On Java 21 or higher the tasks are executed by virtual threads instead, so
+ * blocking operations don't hold any platform thread.<br>
+ * Any exception thrown by a task is reported to the uncaught exception handler of its thread.<br>
+ * Every task is given as {@link Future} and cancelled by interrupting its thread.
+ *
+ * @author Rubenicos
+ */
+public class ScheduledDelayedExecutor implements DelayedExecutor<Future<?>> {
+
+    private static final int DEFAULT_TIMER_WORKERS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Shared executor used by default on brokers.<br>
+     * Repeatable tasks are executed at fixed rate.
+     */
+    public static final ScheduledDelayedExecutor SHARED = new ScheduledDelayedExecutor("delivery4j", Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), true);
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ExecutorService worker;
+    private final ExecutorService timerWorker;
+    private final boolean fixedRate;
+    private final boolean virtual;
+
+    /**
+     * Constructs a scheduled delayed executor that use virtual threads for tasks if they are supported.
+     *
+     * @param name      the prefix for thread names.
+     * @param threads   the number of threads that time delayed and repeatable tasks.
+     * @param fixedRate true to execute repeatable tasks at fixed rate, false to execute them with fixed delay between executions.
+     */
+    public ScheduledDelayedExecutor(@NotNull String name, int threads, boolean fixedRate) {
+        this(name, threads, fixedRate, VirtualThreads.isSupported());
+    }
+
+    /**
+     * Constructs a scheduled delayed executor.
+     *
+     * @param name      the prefix for thread names.
+     * @param threads   the number of threads that time delayed and repeatable tasks.
+     * @param fixedRate true to execute repeatable tasks at fixed rate, false to execute them with fixed delay between executions.
+     * @param virtual   true to execute tasks in virtual threads, only if they are supported.
+     */
+    public ScheduledDelayedExecutor(@NotNull String name, int threads, boolean fixedRate, boolean virtual) {
+        this(name, threads, DEFAULT_TIMER_WORKERS, fixedRate, virtual);
+    }
+
+    /**
+     * Constructs a scheduled delayed executor with a bounded timer pool.
+     *
+     * @param name         the prefix for thread names.
+     * @param threads      the number of threads that time delayed and repeatable tasks.
+     * @param timerWorkers the maximum number of platform threads that execute delayed and repeatable tasks once they are due.
+     * @param fixedRate    true to execute repeatable tasks at fixed rate, false to execute them with fixed delay between executions.
+     * @param virtual      true to execute tasks in virtual threads instead of platform threads, only if they are supported.
+     */
+    public ScheduledDelayedExecutor(@NotNull String name, int threads, int timerWorkers, boolean fixedRate, boolean virtual) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive");
+        }
+        if (timerWorkers < 1) {
+            throw new IllegalArgumentException("The number of timer workers must be positive");
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, factory(name + "-scheduler-"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        final ExecutorService virtualWorker = virtual ? VirtualThreads.newExecutor(name + "-virtual-") : null;
+        if (virtualWorker == null) {
+            this.worker = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), factory(name + "-worker-"));
+            // Core threads are allowed to time out, so the pool grows up to its bound before queueing tasks,
+            // every repeatable task is queued at most once, so the queue is bounded by the scheduled tasks
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(timerWorkers, timerWorkers, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory(name + "-timer-"));
+            pool.allowCoreThreadTimeOut(true);
+            this.timerWorker = pool;
+            this.virtual = false;
+        } else {
+            this.worker = virtualWorker;
+            this.timerWorker = virtualWorker;
+            this.virtual = true;
+        }
+        this.fixedRate = fixedRate;
+    }
+
+    @NotNull
+    private static ThreadFactory factory(@NotNull String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Check if repeatable tasks are executed at fixed rate.
+     *
+     * @return true if tasks are executed at fixed rate, false if they are executed with fixed delay.
+     */
+    public boolean isFixedRate() {
+        return fixedRate;
+    }
+
+    /**
+     * Check if immediate tasks are executed in virtual threads.
+     *
+     * @return true if virtual threads are used.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public @NotNull Future<?> execute(@NotNull Runnable command) {
+        final FutureTask<Void> task = new FutureTask<>(command, null) {
+            @Override
+            protected void setException(Throwable t) {
+                super.setException(t);
+                report(t);
+            }
+        };
+        this.worker.execute(task);
+        return task;
+    }
+
+    private static void report(@NotNull Throwable t) {
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+    }
+
+    @Override
+    public @NotNull Future<?> execute(@NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
+        final Task task = new Task(command, 0);
+        task.timer = this.scheduler.schedule(task, delay, unit);
+        return task;
+    }
+
+    @Override
+    public @NotNull Future<?> execute(@NotNull Runnable command, long delay, long period, @NotNull TimeUnit unit) {
+        if (this.fixedRate) {
+            return executeAtFixedRate(command, delay, period, unit);
+        } else {
+            return executeWithFixedDelay(command, delay, period, unit);
+        }
+    }
+
+    /**
+     * Executes the given command after the initial delay has passed, and then periodically
+     * executed at fixed rate, so the executions don't drift with the task duration.<br>
+     * If any execution takes longer than its period, the next execution starts late but never concurrently.
+     *
+     * @param command the runnable task.
+     * @param delay   the time delay to pass before the first execution of the task.
+     * @param period  the time between the start of each execution.
+     * @param unit    the time unit for the initial delay and period.
+     * @return        a task that can be cancelled.
+     */
+    @NotNull
+    public Future<?> executeAtFixedRate(@NotNull Runnable command, long delay, long period, @NotNull TimeUnit unit) {
+        final Task task = new Task(command, Math.max(1, unit.toNanos(period)));
+        task.timer = this.scheduler.scheduleAtFixedRate(task, delay, period, unit);
+        return task;
+    }
+
+    /**
+     * Executes the given command after the initial delay has passed, and then periodically
+     * executed with the given delay between the end of an execution and the start of the next one.
+     *
+     * @param command the runnable task.
+     * @param delay   the time delay to pass before the first execution of the task.
+     * @param period  the time between the end of an execution and the start of the next one.
+     * @param unit    the time unit for the initial delay and period.
+     * @return        a task that can be cancelled.
+     */
+    @NotNull
+    public Future<?> executeWithFixedDelay(@NotNull Runnable command, long delay, long period, @NotNull TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be positive");
+        }
+        final Task task = new Task(command, -Math.max(1, unit.toNanos(period)));
+        task.timer = this.scheduler.schedule(task, delay, unit);
+        return task;
+    }
+
+    @Override
+    public void cancel(@NotNull Future<?> future) {
+        future.cancel(true);
+    }
+
+    @Override
+    public @NotNull Executor asExecutor() {
+        return this.worker;
+    }
+
+    /**
+     * Shutdown the current executor, any scheduled task is cancelled and the running tasks are interrupted.<br>
+     * The {@link #SHARED} executor should never be shutdown.
+     */
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+        this.worker.shutdownNow();
+        this.timerWorker.shutdownNow();
+    }
+
+    /**
+     * A task that is timed by the scheduler and executed by the timer pool.
+     */
+    private final class Task implements Future<Object>, Runnable {
+
+        private final Runnable command;
+        // Zero for delayed tasks, positive for fixed rate and negative for fixed delay
+        private final long period;
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile boolean missed;
+        private volatile Future<?> timer;
+        private volatile Future<?> current;
+
+        Task(@NotNull Runnable command, long period) {
+            this.command = command;
+            this.period = period;
+        }
+
+        @Override
+        public void run() {
+            // Executed by the scheduler, so it only hands the command to the timer pool
+            if (this.result.isDone()) {
+                return;
+            }
+            if (!this.running.compareAndSet(false, true)) {
+                this.missed = true;
+                return;
+            }
+            try {
+                this.current = timerWorker.submit(this::work);
+            } catch (RejectedExecutionException e) {
+                this.running.set(false);
+                this.result.completeExceptionally(e);
+            }
+        }
+
+        private void work() {
+            do {
+                this.missed = false;
+                try {
+                    this.command.run();
+                    if (this.period == 0) {
+                        this.result.complete(null);
+                    }
+                } catch (Throwable t) {
+                    if (this.period == 0) {
+                        this.result.completeExceptionally(t);
+                    }
+                    // A thrown exception must not cancel any further execution
+                    report(t);
+                }
+                this.running.set(false);
+                // Executions that were missed while running are executed late, but never concurrently
+            } while (this.period > 0 && this.missed && !this.result.isDone() && this.running.compareAndSet(false, true));
+
+            if (this.period < 0 && !this.result.isDone()) {
+                try {
+                    this.timer = scheduler.schedule(this, -this.period, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    this.result.completeExceptionally(e);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!this.result.cancel(false)) {
+                return false;
+            }
+            final Future<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            final Future<?> current = this.current;
+            if (current != null) {
+                current.cancel(mayInterruptIfRunning);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.result.isDone();
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            return this.result.get();
+        }
+
+        @Override
+        public Object get(long timeout, @NotNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return this.result.get(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executor that run the submitted tasks one at a time and in submission order,
+ * using the threads from a shared executor.<br>
+ * Many serial executors can share the same pool, so tasks from different serial
+ * executors run in parallel while tasks from the same one never overlap.<br>
+ * After a limited number of tasks the drain is submitted again into the pool, so a
+ * busy serial executor doesn't hold a pool thread forever.<br>
+ * The pending tasks can be bounded, once the capacity is reached the provided
+ * {@link Overflow} policy is applied to new tasks.
+ *
+ * @author Rubenicos
+ */
+public class SerialExecutor implements Executor {
+
+    private static final int MAX_DRAIN = 64;
+
+    private final Executor executor;
+    private final int capacity;
+    private final Overflow overflow;
+
+    private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private long enqueued;
+    private long finished;
+    private final Map<Object, Task> keys;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private boolean running;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+
+    /**
+     * Constructs an unbounded serial executor.
+     *
+     * @param executor the executor that provide the threads to run tasks.
+     */
+    public SerialExecutor(@NotNull Executor executor) {
+        this(executor, Integer.MAX_VALUE, Overflow.BLOCK);
+    }
+
+    /**
+     * Constructs a bounded serial executor.
+     *
+     * @param executor the executor that provide the threads to run tasks.
+     * @param capacity the maximum number of pending tasks.
+     * @param overflow the policy to apply when the pending tasks reach the capacity.
+     */
+    public SerialExecutor(@NotNull Executor executor, int capacity, @NotNull Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.keys = overflow == Overflow.CONFLATE ? new HashMap<>() : null;
+    }
+
+    /**
+     * Get the maximum number of pending tasks.
+     *
+     * @return a task count.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the policy that is applied when the pending tasks reach the capacity.
+     *
+     * @return an overflow policy.
+     */
+    @NotNull
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Get the number of tasks waiting to be executed.
+     *
+     * @return a task count.
+     */
+    public int getPending() {
+        this.lock.lock();
+        try {
+            return this.tasks.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of tasks that were discarded by the overflow policy.
+     *
+     * @return a task count.
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Get the number of pending tasks that were replaced by a newer task with the same key.
+     *
+     * @return a task count.
+     */
+    public long getConflated() {
+        return this.conflated.sum();
+    }
+
+    /**
+     * Get a future that is completed once every task submitted before this call is executed
+     * or discarded by the overflow policy.<br>
+     * The future is not queued as task, so it's never blocked or discarded by the overflow policy.
+     *
+     * @return a {@link CompletableFuture} that is completed when the current tasks are executed.
+     */
+    @NotNull
+    public CompletableFuture<Void> drained() {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        this.lock.lock();
+        try {
+            if (this.finished == this.enqueued) {
+                future.complete(null);
+            } else {
+                this.waiters.add(new Waiter(this.enqueued, future));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return future;
+    }
+
+    // Must be called while holding the lock
+    @Nullable
+    private List<CompletableFuture<Void>> finish() {
+        this.finished++;
+        List<CompletableFuture<Void>> completed = null;
+        Waiter waiter;
+        while ((waiter = this.waiters.peek()) != null && waiter.target <= this.finished) {
+            this.waiters.poll();
+            if (completed == null) {
+                completed = new ArrayList<>();
+            }
+            completed.add(waiter.future);
+        }
+        return completed;
+    }
+
+    private static void complete(@Nullable List<CompletableFuture<Void>> completed) {
+        if (completed != null) {
+            for (CompletableFuture<Void> future : completed) {
+                future.complete(null);
+            }
+        }
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+        execute(null, command);
+    }
+
+    /**
+     * Executes the given command with a key used by {@link Overflow#CONFLATE} policy.<br>
+     * If a pending task with the same key exists, its command is replaced by the given one.
+     *
+     * @param key     the task key, null to never conflate this task.
+     * @param command the runnable task.
+     */
+    public void execute(@Nullable Object key, @NotNull Runnable command) {
+        List<CompletableFuture<Void>> completed = null;
+        this.lock.lock();
+        try {
+            if (this.keys != null && key != null) {
+                final Task pending = this.keys.get(key);
+                if (pending != null) {
+                    pending.command = command;
+                    this.conflated.increment();
+                    return;
+                }
+            }
+            while (this.tasks.size() >= this.capacity) {
+                switch (this.overflow) {
+                    case DROP_OLDEST:
+                        unlink(this.tasks.poll());
+                        this.dropped.increment();
+                        final List<CompletableFuture<Void>> released = finish();
+                        if (released != null) {
+                            if (completed == null) {
+                                completed = released;
+                            } else {
+                                completed.addAll(released);
+                            }
+                        }
+                        break;
+                    case DROP_NEWEST:
+                        this.dropped.increment();
+                        return;
+                    case BLOCK:
+                    case CONFLATE:
+                    default:
+                        try {
+                            this.notFull.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            this.dropped.increment();
+                            return;
+                        }
+                        break;
+                }
+            }
+            final Task task = new Task(key, command);
+            this.tasks.add(task);
+            this.enqueued++;
+            if (this.keys != null && key != null) {
+                this.keys.put(key, task);
+            }
+            if (this.running) {
+                return;
+            }
+            this.running = true;
+        } finally {
+            this.lock.unlock();
+            complete(completed);
+        }
+        schedule();
+    }
+
+    private void unlink(@Nullable Task task) {
+        if (task != null && this.keys != null && task.key != null) {
+            this.keys.remove(task.key, task);
+        }
+    }
+
+    private void schedule() {
+        try {
+            this.executor.execute(this::drain);
+        } catch (Throwable t) {
+            this.lock.lock();
+            try {
+                this.running = false;
+            } finally {
+                this.lock.unlock();
+            }
+            throw t;
+        }
+    }
+
+    private void drain() {
+        boolean executed = false;
+        for (int i = 0; i < MAX_DRAIN; i++) {
+            final Runnable command;
+            List<CompletableFuture<Void>> completed = null;
+            this.lock.lock();
+            try {
+                if (executed) {
+                    completed = finish();
+                }
+                final Task task = this.tasks.poll();
+                if (task == null) {
+                    this.running = false;
+                    return;
+                }
+                unlink(task);
+                command = task.command;
+                this.notFull.signal();
+            } finally {
+                this.lock.unlock();
+                complete(completed);
+            }
+            try {
+                command.run();
+            } catch (Throwable t) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+            executed = true;
+        }
+        List<CompletableFuture<Void>> completed = null;
+        this.lock.lock();
+        try {
+            completed = finish();
+            if (this.tasks.isEmpty()) {
+                this.running = false;
+                return;
+            }
+        } finally {
+            this.lock.unlock();
+            complete(completed);
+        }
+        // Continue later to let other tasks use the current thread
+        schedule();
+    }
+
+    /**
+     * Policy to apply when a serial executor reach its capacity.
+     */
+    public enum Overflow {
+        /**
+         * Block the submitting thread until a pending task is executed.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest pending task.
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the submitted task.
+         */
+        DROP_NEWEST,
+        /**
+         * Replace any pending task with the same key, or block the submitting thread if there's no task to replace.
+         */
+        CONFLATE
+    }
+
+    private static final class Waiter {
+
+        private final long target;
+        private final CompletableFuture<Void> future;
+
+        Waiter(long target, @NotNull CompletableFuture<Void> future) {
+            this.target = target;
+            this.future = future;
+        }
+    }
+
+    private static final class Task {
+
+        private final Object key;
+        private Runnable command;
+
+        Task(@Nullable Object key, @NotNull Runnable command) {
+            this.key = key;
+            this.command = command;
+        }
+    }
+}
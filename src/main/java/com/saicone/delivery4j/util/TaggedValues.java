@@ -0,0 +1,263 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Utility class to write and read values prefixed by a single-byte type tag.<br>
+ * Supported values are null, booleans, numbers, Strings, UUIDs, byte arrays and
+ * collections of supported values, any other object is written as String.
+ *
+ * @author Rubenicos
+ */
+public final class TaggedValues {
+
+    /**
+     * Null value tag.
+     */
+    public static final byte NULL = 0;
+    /**
+     * False boolean tag, without any additional byte.
+     */
+    public static final byte FALSE = 1;
+    /**
+     * True boolean tag, without any additional byte.
+     */
+    public static final byte TRUE = 2;
+    /**
+     * Integer tag, followed by a zig-zag variable-length int.
+     */
+    public static final byte INT = 3;
+    /**
+     * Long tag, followed by a zig-zag variable-length long.
+     */
+    public static final byte LONG = 4;
+    /**
+     * Double tag, followed by eight bytes.
+     */
+    public static final byte DOUBLE = 5;
+    /**
+     * Float tag, followed by four bytes.
+     */
+    public static final byte FLOAT = 6;
+    /**
+     * String tag, followed by UTF-8 bytes with a variable-length prefix.
+     */
+    public static final byte STRING = 7;
+    /**
+     * UUID tag, followed by sixteen bytes.
+     */
+    public static final byte UUID = 8;
+    /**
+     * Byte array tag, followed by bytes with a variable-length prefix.
+     */
+    public static final byte BYTES = 9;
+    /**
+     * List tag, followed by a variable-length size and tagged elements.
+     */
+    public static final byte LIST = 10;
+
+    private TaggedValues() {
+    }
+
+    /**
+     * Get the tag that will be used to write the provided value.
+     *
+     * @param value the value to check.
+     * @return      a type tag.
+     */
+    public static byte tagOf(@Nullable Object value) {
+        if (value == null) {
+            return NULL;
+        } else if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof java.util.UUID) {
+            return UUID;
+        } else if (value instanceof byte[]) {
+            return BYTES;
+        } else if (value instanceof Collection) {
+            return LIST;
+        }
+        return STRING;
+    }
+
+    /**
+     * Write the provided value with its type tag.
+     *
+     * @param out   the output to write into.
+     * @param value the value to write.
+     */
+    public static void write(@NotNull BufferOutput out, @Nullable Object value) {
+        final byte tag = tagOf(value);
+        out.writeByte(tag);
+        writeValue(out, tag, value);
+    }
+
+    /**
+     * Write the provided value without its type tag.
+     *
+     * @param out   the output to write into.
+     * @param tag   the value tag, previously obtained with {@link #tagOf(Object)}.
+     * @param value the value to write.
+     */
+    public static void writeValue(@NotNull BufferOutput out, byte tag, @Nullable Object value) {
+        switch (tag) {
+            case NULL:
+            case FALSE:
+            case TRUE:
+                break;
+            case INT:
+                out.writeZigZagInt(((Number) value).intValue());
+                break;
+            case LONG:
+                out.writeZigZagLong((Long) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case UUID:
+                out.writeLong(((java.util.UUID) value).getMostSignificantBits());
+                out.writeLong(((java.util.UUID) value).getLeastSignificantBits());
+                break;
+            case BYTES:
+                out.writeBytes((byte[]) value);
+                break;
+            case LIST:
+                final Collection<?> collection = (Collection<?>) value;
+                out.writeVarInt(collection.size());
+                for (Object element : collection) {
+                    write(out, element);
+                }
+                break;
+            case STRING:
+            default:
+                out.writeString(value instanceof Enum ? ((Enum<?>) value).name() : String.valueOf(value));
+                break;
+        }
+    }
+
+    /**
+     * Read a tagged value from the provided buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return       a decoded value.
+     * @throws IllegalArgumentException if the value tag is unknown.
+     */
+    @Nullable
+    public static Object read(@NotNull ByteBuffer buffer) {
+        return readValue(buffer, buffer.get());
+    }
+
+    /**
+     * Read a value with the provided type tag from buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @param tag    the type tag of the value.
+     * @return       a decoded value.
+     * @throws IllegalArgumentException if the value tag is unknown.
+     */
+    @Nullable
+    public static Object readValue(@NotNull ByteBuffer buffer, byte tag) {
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case INT:
+                return Buffers.readZigZagInt(buffer);
+            case LONG:
+                return Buffers.readZigZagLong(buffer);
+            case DOUBLE:
+                return buffer.getDouble();
+            case FLOAT:
+                return buffer.getFloat();
+            case STRING:
+                return Buffers.readString(buffer);
+            case UUID:
+                return new java.util.UUID(buffer.getLong(), buffer.getLong());
+            case BYTES:
+                final int length = Buffers.readVarInt(buffer);
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                return bytes;
+            case LIST:
+                final int size = Buffers.readVarInt(buffer);
+                final List<Object> list = new ArrayList<>(Math.min(size, buffer.remaining()));
+                for (int i = 0; i < size; i++) {
+                    list.add(read(buffer));
+                }
+                return list;
+            default:
+                throw new IllegalArgumentException("Unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * Skip a tagged value from the provided buffer without decoding it.
+     *
+     * @param buffer the buffer to read from.
+     * @throws IllegalArgumentException if the value tag is unknown.
+     */
+    public static void skip(@NotNull ByteBuffer buffer) {
+        final byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+            case FALSE:
+            case TRUE:
+                break;
+            case INT:
+                Buffers.readVarInt(buffer);
+                break;
+            case LONG:
+                Buffers.readVarLong(buffer);
+                break;
+            case DOUBLE:
+                buffer.position(buffer.position() + 8);
+                break;
+            case FLOAT:
+                buffer.position(buffer.position() + 4);
+                break;
+            case UUID:
+                buffer.position(buffer.position() + 16);
+                break;
+            case STRING:
+            case BYTES:
+                final int length = Buffers.readVarInt(buffer);
+                buffer.position(buffer.position() + length);
+                break;
+            case LIST:
+                final int size = Buffers.readVarInt(buffer);
+                for (int i = 0; i < size; i++) {
+                    skip(buffer);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown value tag: " + tag);
+        }
+    }
+}
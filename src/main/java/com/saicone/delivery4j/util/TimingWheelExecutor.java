@@ -0,0 +1,391 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delayed executor that use a hashed timing wheel to schedule tasks.<br>
+ * A single ticker thread advances the wheel every tick and hands any expired task to
+ * the provided executor, while scheduling and cancelling a task is a constant time queue
+ * insertion, so this executor is suggested for tens of thousands of pending short
+ * delays like timeouts and retries.<br>
+ * The tasks are executed with a precision of one tick, and never before their delay.
+ *
+ * @author Rubenicos
+ */
+public class TimingWheelExecutor implements DelayedExecutor<TimingWheelExecutor.Timeout> {
+
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int SHUTDOWN = 2;
+
+    private static final int MAX_TRANSFERS = 100_000;
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    /**
+     * Shared executor used by default for request timeouts.<br>
+     * Its ticker thread is only started once a task is scheduled.
+     */
+    public static final TimingWheelExecutor SHARED = new TimingWheelExecutor();
+
+    private final long tick;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+    private final long origin = System.nanoTime();
+
+    private final Queue<Timeout> timeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private final LongAdder pending = new LongAdder();
+    private volatile Thread ticker;
+    private long tickCount;
+
+    /**
+     * Constructs a timing wheel executor with 10 milliseconds tick and 512 buckets,
+     * that execute the tasks using the shared scheduled executor.
+     */
+    public TimingWheelExecutor() {
+        this(10, TimeUnit.MILLISECONDS, 512, ScheduledDelayedExecutor.SHARED.asExecutor());
+    }
+
+    /**
+     * Constructs a timing wheel executor.
+     *
+     * @param tick      the duration between ticks.
+     * @param unit      the time unit of the tick duration.
+     * @param wheelSize the number of buckets in the wheel, rounded up to the next power of two.
+     * @param executor  the executor that run the expired tasks.
+     */
+    public TimingWheelExecutor(long tick, @NotNull TimeUnit unit, int wheelSize, @NotNull Executor executor) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("The tick duration must be positive");
+        }
+        if (wheelSize < 1 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+        }
+        this.tick = Math.max(1, unit.toNanos(tick));
+        final int size = wheelSize <= 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the duration between ticks.
+     *
+     * @param unit the time unit to convert into.
+     * @return     a tick duration.
+     */
+    public long getTick(@NotNull TimeUnit unit) {
+        return unit.convert(this.tick, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of buckets in the wheel.
+     *
+     * @return a wheel size.
+     */
+    public int getWheelSize() {
+        return this.wheel.length;
+    }
+
+    /**
+     * Get the number of delayed and repeatable tasks that are waiting to be executed.
+     *
+     * @return a task count.
+     */
+    public long getPending() {
+        return this.pending.sum();
+    }
+
+    @Override
+    public @NotNull Timeout execute(@NotNull Runnable command) {
+        final Timeout timeout = new Timeout(this, command, System.nanoTime(), 0);
+        timeout.state.set(Timeout.EXPIRED);
+        this.executor.execute(timeout);
+        return timeout;
+    }
+
+    @Override
+    public @NotNull Timeout execute(@NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
+        return schedule(command, unit.toNanos(delay), 0);
+    }
+
+    @Override
+    public @NotNull Timeout execute(@NotNull Runnable command, long delay, long period, @NotNull TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be positive");
+        }
+        return schedule(command, unit.toNanos(delay), Math.max(1, unit.toNanos(period)));
+    }
+
+    @NotNull
+    private Timeout schedule(@NotNull Runnable command, long delay, long period) {
+        start();
+        final Timeout timeout = new Timeout(this, command, System.nanoTime() + Math.max(0, delay), period);
+        this.pending.increment();
+        this.timeouts.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void cancel(@NotNull Timeout timeout) {
+        timeout.cancel();
+    }
+
+    private void start() {
+        switch (this.state.get()) {
+            case INIT:
+                if (this.state.compareAndSet(INIT, STARTED)) {
+                    final Thread thread = new Thread(this::tick, "delivery4j-wheel-" + COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    this.ticker = thread;
+                    thread.start();
+                }
+                break;
+            case STARTED:
+                break;
+            default:
+                throw new IllegalStateException("The timing wheel executor is shutdown");
+        }
+    }
+
+    /**
+     * Shutdown the ticker thread, any pending task is discarded.<br>
+     * The {@link #SHARED} executor should never be shutdown.
+     */
+    public void shutdown() {
+        if (this.state.getAndSet(SHUTDOWN) == STARTED) {
+            final Thread ticker = this.ticker;
+            if (ticker != null) {
+                LockSupport.unpark(ticker);
+            }
+        }
+    }
+
+    private void tick() {
+        while (this.state.get() == STARTED) {
+            final long deadline = this.origin + (this.tickCount + 1) * this.tick;
+            final long sleep = deadline - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue;
+            }
+            removeCancelled();
+            transferTimeouts();
+            expire(this.wheel[(int) (this.tickCount & this.mask)]);
+            this.tickCount++;
+        }
+        this.timeouts.clear();
+        this.cancelled.clear();
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = this.cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferTimeouts() {
+        // Limit the transfers to not starve the expiration of current bucket
+        for (int i = 0; i < MAX_TRANSFERS; i++) {
+            final Timeout timeout = this.timeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            final long ticks = (timeout.deadline - this.origin) / this.tick;
+            timeout.rounds = Math.max(0, (ticks - this.tickCount) / this.wheel.length);
+            this.wheel[(int) (Math.max(ticks, this.tickCount) & this.mask)].add(timeout);
+        }
+    }
+
+    private void expire(@NotNull Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                bucket.remove(timeout);
+            } else if (timeout.rounds <= 0) {
+                bucket.remove(timeout);
+                fire(timeout);
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void fire(@NotNull Timeout timeout) {
+        if (timeout.period == 0) {
+            if (!timeout.state.compareAndSet(Timeout.INIT, Timeout.EXPIRED)) {
+                return;
+            }
+            this.pending.decrement();
+        }
+        try {
+            this.executor.execute(timeout);
+        } catch (Throwable t) {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    private void reschedule(@NotNull Timeout timeout) {
+        timeout.deadline += timeout.period;
+        if (timeout.state.get() == Timeout.INIT && this.state.get() == STARTED) {
+            this.timeouts.add(timeout);
+        }
+    }
+
+    /**
+     * A task scheduled by a timing wheel executor.
+     */
+    public static final class Timeout implements Runnable {
+
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheelExecutor executor;
+        private final Runnable command;
+        private final long period;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        private volatile long deadline;
+        private Thread runner;
+
+        // Only accessed by ticker thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(@NotNull TimingWheelExecutor executor, @NotNull Runnable command, long deadline, long period) {
+            this.executor = executor;
+            this.command = command;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * Check if this task was cancelled.
+         *
+         * @return true if the task is cancelled.
+         */
+        public boolean isCancelled() {
+            return this.state.get() == CANCELLED;
+        }
+
+        /**
+         * Check if this task was already handed to the executor.<br>
+         * Repeatable tasks are never expired.
+         *
+         * @return true if the task is expired.
+         */
+        public boolean isExpired() {
+            return this.state.get() == EXPIRED;
+        }
+
+        /**
+         * Cancel this task, if it's currently running its thread is interrupted.
+         *
+         * @return true if the task was cancelled by this call, false if it was already cancelled.
+         */
+        public boolean cancel() {
+            final int previous = this.state.getAndSet(CANCELLED);
+            if (previous == CANCELLED) {
+                return false;
+            }
+            if (previous == INIT) {
+                this.executor.pending.decrement();
+                this.executor.cancelled.add(this);
+            }
+            synchronized (this) {
+                if (this.runner != null) {
+                    this.runner.interrupt();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.state.get() == CANCELLED) {
+                    return;
+                }
+                this.runner = Thread.currentThread();
+            }
+            try {
+                this.command.run();
+            } catch (Throwable t) {
+                if (this.period == 0) {
+                    throw t;
+                }
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            } finally {
+                synchronized (this) {
+                    this.runner = null;
+                    // Clear any interruption from cancel()
+                    Thread.interrupted();
+                }
+            }
+            if (this.period > 0) {
+                this.executor.reschedule(this);
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(@NotNull Timeout timeout) {
+            timeout.bucket = this;
+            if (this.head == null) {
+                this.head = this.tail = timeout;
+            } else {
+                this.tail.next = timeout;
+                timeout.prev = this.tail;
+                this.tail = timeout;
+            }
+        }
+
+        void remove(@NotNull Timeout timeout) {
+            final Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == this.head) {
+                this.head = next;
+            }
+            if (timeout == this.tail) {
+                this.tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.saicone.delivery4j.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Utility class to create virtual threads when the current Java version supports them.<br>
+ * This is the Java 11 implementation that never supports virtual threads, the library jar
+ * is a multi-release jar that replaces this class on Java 21 or higher.
+ *
+ * @author Rubenicos
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Check if virtual threads are supported by the current Java version.
+     *
+     * @return true if virtual threads can be created.
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Create a thread factory that create virtual threads.
+     *
+     * @param prefix the prefix for thread names, followed by a counter.
+     * @return       a thread factory if virtual threads are supported, null otherwise.
+     */
+    @Nullable
+    public static ThreadFactory factory(@NotNull String prefix) {
+        return null;
+    }
+
+    /**
+     * Create an executor that execute every task in a new virtual thread.
+     *
+     * @param prefix the prefix for thread names, followed by a counter.
+     * @return       an executor service if virtual threads are supported, null otherwise.
+     */
+    @Nullable
+    public static ExecutorService newExecutor(@NotNull String prefix) {
+        return null;
+    }
+}
@@ -1,18 +1,57 @@
 package com.saicone.delivery4j;
 
 import com.saicone.delivery4j.broker.TestBroker;
+import com.saicone.delivery4j.cache.SequenceCache;
 import com.saicone.delivery4j.impl.TestMessenger;
+import com.saicone.delivery4j.util.BinarySerializer;
+import com.saicone.delivery4j.util.BufferOutput;
+import com.saicone.delivery4j.util.BufferPool;
+import com.saicone.delivery4j.util.Buffers;
+import com.saicone.delivery4j.util.DelayedExecutor;
 import com.saicone.delivery4j.util.Encryptor;
+import com.saicone.delivery4j.util.FragmentAssembler;
+import com.saicone.delivery4j.util.MessageSerializer;
+import com.saicone.delivery4j.util.ScheduledDelayedExecutor;
+import com.saicone.delivery4j.util.SerialExecutor;
+import com.saicone.delivery4j.util.TimingWheelExecutor;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MessengerTest {
 
@@ -54,6 +93,84 @@ public class MessengerTest {
         assertNull(result[1]);
     }
 
+    @Test
+    public void testPlainCache() throws IOException {
+        final MessageChannel sender = new MessageChannel(CHANNEL).cache(true);
+        final MessageChannel receiver = new MessageChannel(CHANNEL).cache(new SequenceCache(64, 10, TimeUnit.SECONDS));
+
+        // Plain lines with ID keep the legacy layout by default
+        final ByteBuffer legacy = sender.encodeBuffer(MESSAGE, null);
+        assertEquals(8 + 2 + MESSAGE.length() + 2 + 4, legacy.remaining());
+        assertNull(sender.decode(legacy.duplicate()));
+        assertArrayEquals(new String[] { MESSAGE, null }, receiver.decode(legacy.duplicate()));
+
+        // Framed plain lines carry a node and sequence ID
+        sender.framed(true);
+        final ByteBuffer frame = sender.encodeBuffer(MESSAGE, null, "NULL");
+        assertEquals((byte) 0xD4, frame.get(0));
+        final long id = frame.getLong(3);
+        assertEquals(sender.getCache().getNode(), (int) (id >>> 32));
+
+        // Own messages are rejected, while messages from other node are accepted once
+        assertNull(sender.decode(frame.duplicate()));
+        assertArrayEquals(new String[] { MESSAGE, null, null }, receiver.decode(frame.duplicate()));
+        assertNull(receiver.decode(frame.duplicate()));
+
+        // Two channels from the same process with the same broker don't reject each other messages
+        final MessageChannel other = new MessageChannel(CHANNEL).cache(true);
+        assertArrayEquals(new String[] { MESSAGE, null, null }, other.decode(frame.duplicate()));
+    }
+
+    @Test
+    public void testTaggedCache() throws IOException {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final List<String> result = new ArrayList<>();
+        final MessageChannel messageChannel = messenger.subscribe(CHANNEL).consume((channel, lines) -> result.add(lines[0])).tagged(true);
+
+        for (MessageChannel.Cache cache : new MessageChannel.Cache[] { MessageChannel.Cache.of(10, TimeUnit.SECONDS), new SequenceCache(1024, 10, TimeUnit.SECONDS) }) {
+            result.clear();
+            messageChannel.cache(cache);
+
+            messenger.send(CHANNEL, MESSAGE);
+            assertTrue(result.isEmpty());
+
+            // Message from other node, delivered twice
+            final ByteBuffer frame = ByteBuffer.allocate(32);
+            frame.put((byte) 0xD4).put((byte) 1).put((byte) 4).putLong(((long) ~cache.getNode() << 32) | 1);
+            frame.put((byte) 1).put((byte) 7).put((byte) MESSAGE.length()).put(MESSAGE.getBytes());
+            frame.flip();
+            messenger.getBroker().send(CHANNEL, frame.duplicate());
+            messenger.getBroker().send(CHANNEL, frame.duplicate());
+
+            assertEquals(List.of(MESSAGE), result);
+            assertEquals(1, cache.stats().getHits());
+            assertEquals(1, cache.stats().getSaves());
+        }
+    }
+
+    @Test
+    public void testRecreatedSenderCache() {
+        final SequenceCache receiver = new SequenceCache(64, 10, TimeUnit.SECONDS);
+        final long origin = (long) ~receiver.getNode() << 32;
+        for (int round = 0; round < 3; round++) {
+            // A new cache on the sender process must keep its messages deliverable
+            final MessageChannel.Cache sender = new SequenceCache(64, 10, TimeUnit.SECONDS);
+            for (int i = 0; i < 10; i++) {
+                final long id = origin | (sender.next() & 0xFFFFFFFFL);
+                assertTrue(receiver.accept(id));
+                assertFalse(receiver.accept(id));
+            }
+        }
+
+        // Wrapped sequence
+        assertTrue(receiver.accept(origin | 0xFFFFFFFFL));
+        assertTrue(receiver.accept(origin | 1));
+        assertFalse(receiver.accept(origin | 1));
+        assertTrue(receiver.accept(origin | 2));
+    }
+
     @Test
     public void testEncryption() throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
         final TestMessenger messenger = new TestMessenger();
@@ -74,4 +191,867 @@ public class MessengerTest {
         assertEquals(CHANNEL, result[0]);
         assertEquals(MESSAGE, result[1]);
     }
+
+    @Test
+    public void testBufferDelivery() throws IOException {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final String[] result = new String[3];
+        final MessageChannel messageChannel = messenger.subscribe(CHANNEL).consume((channel, lines) -> {
+            result[0] = channel;
+            result[1] = lines[0];
+            result[2] = lines[1];
+        });
+
+        final ByteBuffer frame = messageChannel.encodeBuffer(MESSAGE, "\u00e1\u20ac");
+        final ByteBuffer buffer = ByteBuffer.allocate(frame.remaining() + 16);
+        buffer.position(8);
+        buffer.put(frame);
+        buffer.position(8).limit(8 + frame.capacity());
+
+        messenger.getBroker().send(CHANNEL, buffer.slice());
+
+        assertEquals(CHANNEL, result[0]);
+        assertEquals(MESSAGE, result[1]);
+        assertEquals("\u00e1\u20ac", result[2]);
+
+        // Lengths and line counts from the wire are checked before allocating
+        assertThrows(EOFException.class, () -> Buffers.readBytes(ByteBuffer.allocate(4), Integer.MAX_VALUE));
+        assertThrows(EOFException.class, () -> Buffers.readBytes(ByteBuffer.allocate(4), -1));
+        assertThrows(EOFException.class, () -> messageChannel.decode(ByteBuffer.allocate(8).putInt(0, Integer.MAX_VALUE)));
+        final ByteBuffer tagged = ByteBuffer.wrap(new byte[] { (byte) 0xD4, 1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+        assertThrows(EOFException.class, () -> messageChannel.decodeMessage(tagged));
+    }
+
+    @Test
+    public void testBufferPool() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final BufferPool pool = new BufferPool(64, 1024);
+        final String[] result = new String[1];
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> result[0] = lines[0]).pool(pool);
+
+        final String message = MESSAGE.repeat(20);
+        messenger.send(CHANNEL, message);
+        assertEquals(message, result[0]);
+        messenger.send(CHANNEL, message);
+        assertEquals(message, result[0]);
+
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void testLongLineDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final String[] result = new String[2];
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> {
+            result[0] = lines[0];
+            result[1] = lines[1];
+        });
+
+        final String message = "\u00e1" + MESSAGE.repeat(10000);
+        messenger.send(CHANNEL, message, 1);
+
+        assertEquals(message, result[0]);
+        assertEquals("1", result[1]);
+    }
+
+    @Test
+    public void testBatchDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final List<String> result = new ArrayList<>();
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> result.add(lines[0] + ":" + lines[1]));
+
+        messenger.sendBatch(CHANNEL, List.of(new Object[] { MESSAGE, 1 }, new Object[] { MESSAGE, 2 }, new Object[] { MESSAGE, null }));
+
+        assertEquals(List.of(MESSAGE + ":1", MESSAGE + ":2", MESSAGE + ":null"), result);
+    }
+
+    @Test
+    public void testCoalescedDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+        messenger.getBroker().setExecutor(DelayedExecutor.JAVA);
+
+        final List<String> result = new ArrayList<>();
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> result.add(lines[0])).linger(1, TimeUnit.MINUTES);
+
+        final CompletableFuture<Void> first = messenger.send(CHANNEL, "1");
+        messenger.send(CHANNEL, "2");
+        messenger.send(CHANNEL, "3");
+
+        assertTrue(result.isEmpty());
+        assertFalse(first.isDone());
+
+        messenger.close();
+
+        assertEquals(List.of("1", "2", "3"), result);
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    public void testFragmentedDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        // Reassembled buffers must reach brokers that only override the byte array method
+        final List<byte[]> received = new ArrayList<>();
+        final TestBroker broker = new TestBroker() {
+            @Override
+            protected void onReceive(@NotNull String channel, byte[] data) {
+                received.add(data);
+            }
+        };
+        broker.setMaxPayloadSize(64);
+        messenger.start(broker);
+
+        final String[] result = new String[1];
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> result[0] = lines[0]);
+
+        final String message = MESSAGE.repeat(50);
+        messenger.send(CHANNEL, message);
+
+        assertEquals(message, result[0]);
+        assertEquals(1, received.size());
+        assertEquals(1, broker.getAssembler().getCompleted());
+        assertEquals(0, broker.getAssembler().getPending());
+    }
+
+    @Test
+    public void testFragmentAssembler() throws InterruptedException, IOException {
+        final FragmentAssembler assembler = new FragmentAssembler(2, 64, 50, TimeUnit.MILLISECONDS);
+
+        // Out of order and duplicated fragments
+        assertNull(assembler.add(CHANNEL, 1, 2, 3, ByteBuffer.wrap(new byte[] { 5 })));
+        assertNull(assembler.add(CHANNEL, 1, 0, 3, ByteBuffer.wrap(new byte[] { 1, 2 })));
+        assertNull(assembler.add(CHANNEL, 1, 0, 3, ByteBuffer.wrap(new byte[] { 9, 9 })));
+        final ByteBuffer message = assembler.add(CHANNEL, 1, 1, 3, ByteBuffer.wrap(new byte[] { 3, 4 }));
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, Buffers.readBytes(message, message.remaining()));
+        assertEquals(1, assembler.getCompleted());
+        assertEquals(0, assembler.getPendingBytes());
+
+        // Forged counts are rejected before allocating the message
+        assertNull(assembler.add(CHANNEL, 2, 0, Integer.MAX_VALUE, ByteBuffer.wrap(new byte[] { 1 })));
+        assertNull(assembler.add(CHANNEL, 3, 0, 40, ByteBuffer.wrap(new byte[] { 1, 2 })));
+        assertEquals(0, assembler.getPending());
+        assertEquals(2, assembler.getEvicted());
+
+        // Eviction at capacity removes the oldest message
+        assertNull(assembler.add(CHANNEL, 4, 0, 2, ByteBuffer.wrap(new byte[] { 1 })));
+        assertNull(assembler.add(CHANNEL, 5, 0, 2, ByteBuffer.wrap(new byte[] { 1 })));
+        assertNull(assembler.add(CHANNEL, 6, 0, 2, ByteBuffer.wrap(new byte[] { 1 })));
+        assertEquals(2, assembler.getPending());
+        assertEquals(3, assembler.getEvicted());
+        assertNull(assembler.add(CHANNEL, 4, 1, 2, ByteBuffer.wrap(new byte[] { 2 })));
+        assertNotNull(assembler.add(CHANNEL, 6, 1, 2, ByteBuffer.wrap(new byte[] { 2 })));
+        assertEquals(1, assembler.getPending());
+        assertEquals(4, assembler.getEvicted());
+
+        // Timeout expiry
+        Thread.sleep(100);
+        assertEquals(0, assembler.getPending());
+        assertEquals(0, assembler.getPendingBytes());
+        assertEquals(1, assembler.getExpired());
+    }
+
+    @Test
+    public void testBinaryDelivery() throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
+        keyGen.init(128);
+        final SecretKey key = keyGen.generateKey();
+
+        final byte[] data = new byte[] { 0, -44, 2, 127, -128, -1 };
+        final byte[][] result = new byte[1][];
+        messenger.subscribe(CHANNEL).consumeBytes((channel, bytes) -> result[0] = bytes).encryptor(Encryptor.of(ALGORITHM, key));
+
+        messenger.sendBytes(CHANNEL, data);
+
+        assertArrayEquals(data, result[0]);
+    }
+
+    @Test
+    public void testObjectDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final Update update = new Update(UUID.randomUUID(), MESSAGE, -42, 1L << 40, true, null, List.of("a", 1, UUID.randomUUID()));
+        final Update[] result = new Update[1];
+        messenger.subscribe(CHANNEL).serializer(MessageSerializer.binary(Update.class)).<Update>consumeObject((channel, object) -> result[0] = object);
+
+        messenger.sendObject(CHANNEL, update);
+
+        assertEquals(update.id, result[0].id);
+        assertEquals(update.name, result[0].name);
+        assertEquals(update.level, result[0].level);
+        assertEquals(update.time, result[0].time);
+        assertEquals(update.online, result[0].online);
+        assertNull(result[0].score);
+        assertEquals(update.values, result[0].values);
+    }
+
+    @Test
+    public void testObjectSchema() throws IOException {
+        final Update update = new Update(UUID.randomUUID(), MESSAGE, -42, 1L << 40, true, 1.5, List.of());
+        final BufferOutput out = new BufferOutput(null, 64);
+        BinarySerializer.of(Update.class).serialize(out, update);
+        final ByteBuffer data = out.buffer().flip();
+
+        // Data written from a different type must never be read into the wrong fields
+        final IOException error = assertThrows(IOException.class, () -> BinarySerializer.of(Status.class).deserialize(data.duplicate()));
+        assertTrue(error.getMessage().contains("schema"), error.getMessage());
+
+        final Update copy = BinarySerializer.of(Update.class).deserialize(data.duplicate());
+        assertEquals(update.name, copy.name);
+        assertEquals(update.score, copy.score);
+    }
+
+    @Test
+    public void testTaggedDelivery() throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
+        keyGen.init(128);
+        final SecretKey key = keyGen.generateKey();
+
+        final UUID id = UUID.randomUUID();
+        final Message[] result = new Message[1];
+        final String[] lines = new String[5];
+        final MessageChannel messageChannel = messenger.subscribe(CHANNEL)
+                .consume((channel, array) -> System.arraycopy(array, 0, lines, 0, array.length))
+                .consumeMessage((channel, message) -> result[0] = message)
+                .tagged(true);
+
+        for (Encryptor encryptor : new Encryptor[] { null, Encryptor.of(ALGORITHM, key) }) {
+            messageChannel.encryptor(encryptor);
+            messenger.send(CHANNEL, 42, id, true, null, "null");
+
+            assertEquals(5, result[0].size());
+            assertEquals(42, result[0].getInt(0));
+            assertEquals(id, result[0].getUuid(1));
+            assertTrue(result[0].getBoolean(2));
+            assertTrue(result[0].isNull(3));
+            assertEquals("null", result[0].getString(4));
+            assertArrayEquals(new String[] { "42", id.toString(), "true", null, "null" }, lines);
+        }
+    }
+
+    @Test
+    public void testMessageView() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        final Object[] result = new Object[2];
+        messenger.subscribe(CHANNEL).consumeMessage((channel, message) -> {
+            assertTrue(message.isView());
+            result[0] = message.getString(0);
+            result[1] = message.copy();
+        });
+
+        messenger.send(CHANNEL, "route", 7, null);
+
+        assertEquals("route", result[0]);
+        final Message message = (Message) result[1];
+        assertEquals(3, message.size());
+        assertEquals(7, message.getInt(1));
+        assertTrue(message.isNull(2));
+    }
+
+    @Test
+    public void testListeners() throws IOException {
+        final MessageChannel messageChannel = MessageChannel.of(CHANNEL);
+
+        final List<String> result = new ArrayList<>();
+        final ChannelListeners.Registration registration = messageChannel.getListeners().add((channel, lines) -> result.add("removed"));
+        messageChannel.consume((channel, lines) -> {
+            throw new IllegalStateException("Failing consumer");
+        }).consume((channel, lines) -> result.add(lines[0])).consumeBefore((channel, lines) -> result.add("first"));
+
+        assertTrue(registration.remove());
+        assertFalse(registration.remove());
+        assertEquals(3, messageChannel.getListeners().size());
+
+        boolean thrown = false;
+        try {
+            messageChannel.accept(messageChannel.encode(MESSAGE));
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+
+        assertTrue(thrown);
+        assertEquals(List.of("first", MESSAGE), result);
+
+        // Message listeners are notified even if a line listener fails
+        result.clear();
+        messageChannel.consumeMessage((channel, message) -> {
+            result.add("message");
+            throw new IOException("Failing message consumer");
+        });
+        final IllegalStateException error = assertThrows(IllegalStateException.class, () -> messageChannel.accept(messageChannel.encode(MESSAGE)));
+        assertEquals(List.of("first", MESSAGE, "message"), result);
+        assertEquals(1, error.getSuppressed().length);
+        assertTrue(error.getSuppressed()[0] instanceof IOException);
+    }
+
+    @Test
+    public void testDispatcherDelivery() throws InterruptedException {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+        final ExecutorService dispatcher = Executors.newFixedThreadPool(4);
+        messenger.setDispatcher(dispatcher);
+
+        final CountDownLatch other = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(100);
+        final List<Integer> result = new CopyOnWriteArrayList<>();
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> {
+            // A slow consumer must not delay other channels
+            if (result.isEmpty()) {
+                try {
+                    other.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            result.add(Integer.parseInt(lines[0]));
+            done.countDown();
+        });
+        messenger.subscribe(CHANNEL + ":other").consume((channel, lines) -> other.countDown());
+
+        for (int i = 0; i < 100; i++) {
+            messenger.send(CHANNEL, i);
+        }
+        messenger.send(CHANNEL + ":other", MESSAGE);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, other.getCount());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) result.get(i));
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testPartitionedDelivery() throws InterruptedException {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+        final ExecutorService dispatcher = Executors.newFixedThreadPool(4);
+        messenger.setDispatcher(dispatcher);
+
+        final CountDownLatch done = new CountDownLatch(400);
+        final Map<String, List<Integer>> result = new ConcurrentHashMap<>();
+        messenger.subscribe(CHANNEL).consumeMessage((channel, message) -> {
+            result.computeIfAbsent(message.getString(0), key -> new CopyOnWriteArrayList<>()).add(message.getInt(1));
+            done.countDown();
+        }).partition(0, 4);
+
+        for (int i = 0; i < 100; i++) {
+            for (String key : new String[] { "a", "b", "c", "d" }) {
+                messenger.send(CHANNEL, key, i);
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, result.size());
+        for (List<Integer> values : result.values()) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, (int) values.get(i));
+            }
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testInboundOverflow() throws Exception {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+        final ExecutorService dispatcher = Executors.newFixedThreadPool(2);
+        messenger.setDispatcher(dispatcher);
+
+        for (SerialExecutor.Overflow overflow : new SerialExecutor.Overflow[] { SerialExecutor.Overflow.DROP_NEWEST, SerialExecutor.Overflow.CONFLATE }) {
+            final String name = CHANNEL + ":" + overflow;
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<String> result = new CopyOnWriteArrayList<>();
+            messenger.subscribe(name).consume((channel, lines) -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                result.add(lines[0] + lines[1]);
+            }).partition(0, 1).inbound(2, overflow);
+
+            messenger.send(name, "a", 1);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            messenger.send(name, "a", 2);
+            messenger.send(name, "a", 3);
+            messenger.send(name, "b", 1);
+            messenger.send(name, "a", 4);
+            assertEquals(2, messenger.getInboundPending(name));
+            assertEquals(2, messenger.getInboundDropped(name));
+            release.countDown();
+
+            final List<String> expected = overflow == SerialExecutor.Overflow.CONFLATE ? List.of("a1", "a4", "b1") : List.of("a1", "a2", "a3");
+            for (int i = 0; i < 50 && result.size() < expected.size(); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(expected, result);
+        }
+
+        // Changing the capacity keeps the received order
+        final String name = CHANNEL + ":resized";
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> result = new CopyOnWriteArrayList<>();
+        final MessageChannel messageChannel = messenger.subscribe(name).consume((channel, lines) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            result.add(Integer.parseInt(lines[0]));
+        }).inbound(10, SerialExecutor.Overflow.BLOCK);
+
+        messenger.send(name, 0);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        messenger.send(name, 1);
+        messageChannel.inbound(20, SerialExecutor.Overflow.BLOCK);
+        messenger.send(name, 2);
+        messenger.send(name, 3);
+        release.countDown();
+
+        for (int i = 0; i < 50 && result.size() < 4; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(0, 1, 2, 3), result);
+
+        // Dropped tasks never discard the drain of a replaced worker
+        final SerialExecutor worker = new SerialExecutor(dispatcher, 1, SerialExecutor.Overflow.DROP_OLDEST);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        worker.execute(() -> {
+            blocked.countDown();
+            try {
+                unblock.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        worker.execute(() -> { });
+        final CompletableFuture<Void> drained = worker.drained();
+        worker.execute(() -> { });
+        assertFalse(drained.isDone());
+        unblock.countDown();
+        drained.get(5, TimeUnit.SECONDS);
+
+        // Replacing DROP_OLDEST workers while messages are arriving
+        final String dropName = CHANNEL + ":replaced";
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final MessageChannel dropChannel = messenger.subscribe(dropName).consume((channel, lines) -> received.add(lines[0])).inbound(2, SerialExecutor.Overflow.DROP_OLDEST);
+        final Thread sender = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                messenger.send(dropName, i);
+            }
+        });
+        sender.start();
+        for (int i = 0; i < 20; i++) {
+            dropChannel.inbound(2 + i % 3, SerialExecutor.Overflow.DROP_OLDEST);
+            Thread.sleep(1);
+        }
+        sender.join(5000);
+        messenger.send(dropName, "last");
+        for (int i = 0; i < 200 && !received.contains("last"); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(received.contains("last"));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testScheduledExecutor() throws Exception {
+        final ScheduledDelayedExecutor executor = new ScheduledDelayedExecutor("test", 1, 2, true, false);
+        try {
+            // A blocking timer never delays other timers
+            final CountDownLatch release = new CountDownLatch(1);
+            final Future<?> blocking = executor.execute(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+            executor.execute(() -> { }, 10, TimeUnit.MILLISECONDS).get(1, TimeUnit.SECONDS);
+            assertFalse(blocking.isDone());
+
+            // Repeatable tasks never run concurrently
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger overlaps = new AtomicInteger();
+            final CountDownLatch repeated = new CountDownLatch(5);
+            final Future<?> repeatable = executor.execute(() -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                repeated.countDown();
+            }, 0, 1, TimeUnit.MILLISECONDS);
+            assertTrue(repeated.await(5, TimeUnit.SECONDS));
+            assertTrue(repeatable.cancel(true));
+            assertTrue(repeatable.isCancelled());
+            assertEquals(0, overlaps.get());
+
+            release.countDown();
+            blocking.get(1, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Long-running immediate tasks never take the threads of timers
+        final ScheduledDelayedExecutor bounded = new ScheduledDelayedExecutor("test", 1, 1, true, false);
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        try {
+            final CountDownLatch busy = new CountDownLatch(1);
+            final Runnable loop = () -> {
+                try {
+                    busy.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            for (int i = 0; i < 4; i++) {
+                bounded.execute(loop);
+            }
+            bounded.execute(() -> { }, 1, TimeUnit.MILLISECONDS).get(1, TimeUnit.SECONDS);
+            busy.countDown();
+
+            // Exceptions from immediate tasks are reported
+            final CompletableFuture<Throwable> reported = new CompletableFuture<>();
+            Thread.setDefaultUncaughtExceptionHandler((thread, t) -> reported.complete(t));
+            bounded.execute(() -> {
+                throw new IllegalStateException("Failing task");
+            });
+            assertTrue(reported.get(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+            bounded.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimingWheel() throws InterruptedException {
+        final TimingWheelExecutor wheel = new TimingWheelExecutor(1, TimeUnit.MILLISECONDS, 8, Runnable::run);
+        try {
+            // Never expired before the deadline, including delays of one or more wheel rotations
+            final long[] delays = { 0, 3, 7, 8, 9, 16, 30 };
+            final CountDownLatch expired = new CountDownLatch(delays.length);
+            final List<Long> early = new CopyOnWriteArrayList<>();
+            for (long delay : delays) {
+                final long start = System.nanoTime();
+                wheel.execute(() -> {
+                    if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.add(delay);
+                    }
+                    expired.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            assertTrue(expired.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(), early);
+            assertEquals(0, wheel.getPending());
+
+            // Cancelled before expiry
+            final AtomicInteger cancelledRuns = new AtomicInteger();
+            final TimingWheelExecutor.Timeout timeout = wheel.execute(cancelledRuns::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+            assertEquals(1, wheel.getPending());
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.cancel());
+            assertTrue(timeout.isCancelled());
+            assertEquals(0, wheel.getPending());
+            Thread.sleep(100);
+            assertEquals(0, cancelledRuns.get());
+            assertFalse(timeout.isExpired());
+
+            // Fixed rate repetition
+            final AtomicInteger runs = new AtomicInteger();
+            final CountDownLatch repeated = new CountDownLatch(5);
+            final TimingWheelExecutor.Timeout repeatable = wheel.execute(() -> {
+                runs.incrementAndGet();
+                repeated.countDown();
+            }, 0, 5, TimeUnit.MILLISECONDS);
+            assertTrue(repeated.await(5, TimeUnit.SECONDS));
+            assertFalse(repeatable.isExpired());
+            assertEquals(1, wheel.getPending());
+            repeatable.cancel();
+            assertEquals(0, wheel.getPending());
+            Thread.sleep(20);
+            final int count = runs.get();
+            Thread.sleep(30);
+            assertEquals(count, runs.get());
+        } finally {
+            wheel.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriterDelivery() throws InterruptedException {
+        final TestMessenger messenger = new TestMessenger();
+        final AtomicInteger sends = new AtomicInteger();
+        messenger.start(new TestBroker() {
+            @Override
+            protected void onSend(@NotNull String channel, byte[] data) throws IOException {
+                sends.incrementAndGet();
+                super.onSend(channel, data);
+            }
+        });
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        messenger.setExecutor(executor);
+
+        final List<Integer> result = new CopyOnWriteArrayList<>();
+        messenger.subscribe(CHANNEL).consume((channel, lines) -> result.add(Integer.parseInt(lines[0]))).autoBatch(true);
+
+        // Hold the writer until every message is waiting
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[1000];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = messenger.send(CHANNEL, i);
+        }
+        latch.countDown();
+        CompletableFuture.allOf(futures).join();
+
+        assertEquals(1000, result.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) result.get(i));
+        }
+        assertTrue(sends.get() <= 10, "Expected batched sends, got " + sends.get());
+
+        // Close must write every waiting message
+        result.clear();
+        final CountDownLatch closed = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                closed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            messenger.send(CHANNEL, i);
+        }
+        messenger.close();
+        closed.countDown();
+        assertEquals(10, result.size());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFlowDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        final TestBroker broker = new TestBroker() {
+            @Override
+            protected boolean onPause(@NotNull String channel) {
+                return true;
+            }
+        };
+        messenger.start(broker);
+
+        final List<Integer> result = new CopyOnWriteArrayList<>();
+        final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        messenger.publisher(CHANNEL, 8).subscribe(new Flow.Subscriber<Message>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+            }
+
+            @Override
+            public void onNext(Message message) {
+                result.add(message.getInt(0));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        final SubmissionPublisher<Object[]> publisher = new SubmissionPublisher<>();
+        final ChannelSubscriber subscriber = messenger.subscriber(CHANNEL);
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 20; i++) {
+            publisher.submit(new Object[] { i });
+        }
+        publisher.close();
+        subscriber.getCompletion().join();
+
+        // Nothing was requested, so the channel must be paused
+        assertTrue(result.isEmpty());
+        assertTrue(broker.getPausedChannels().contains(CHANNEL));
+
+        subscription.get().request(Long.MAX_VALUE);
+        assertEquals(20, result.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, (int) result.get(i));
+        }
+        assertTrue(broker.getPausedChannels().isEmpty());
+    }
+
+    @Test
+    public void testFlowOverflow() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+
+        // The broker doesn't support pausing, so full buffers never block the broker thread
+        for (SerialExecutor.Overflow overflow : new SerialExecutor.Overflow[] { SerialExecutor.Overflow.DROP_OLDEST, SerialExecutor.Overflow.DROP_NEWEST }) {
+            final String name = CHANNEL + ":" + overflow;
+            final List<Integer> result = new CopyOnWriteArrayList<>();
+            final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+            final ChannelPublisher publisher = messenger.publisher(name, 4, overflow);
+            publisher.subscribe(new Flow.Subscriber<Message>() {
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription.set(s);
+                }
+
+                @Override
+                public void onNext(Message message) {
+                    result.add(message.getInt(0));
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            for (int i = 0; i < 10; i++) {
+                messenger.send(name, i);
+            }
+            assertTrue(result.isEmpty());
+            assertEquals(6, publisher.getDropped());
+
+            subscription.get().request(Long.MAX_VALUE);
+            assertEquals(overflow == SerialExecutor.Overflow.DROP_OLDEST ? List.of(6, 7, 8, 9) : List.of(0, 1, 2, 3), result);
+        }
+    }
+
+    @Test
+    public void testRequestDelivery() {
+        final TestMessenger messenger = new TestMessenger();
+        messenger.start(new TestBroker());
+        messenger.subscribe(CHANNEL).respond((channel, lines) -> {
+            if (lines[0].equals("fail")) {
+                throw new IOException("Invalid request");
+            }
+            return new Object[] { lines[0] + " World", lines.length };
+        });
+
+        assertArrayEquals(new String[] { "Hello World", "1" }, messenger.request(CHANNEL, "Hello").join());
+        assertTrue(messenger.getChannels().containsKey(messenger.getReplyChannel()));
+        final CompletionException error = assertThrows(CompletionException.class, () -> messenger.request(CHANNEL, "fail").join());
+        assertTrue(error.getCause().getMessage().endsWith("Invalid request"));
+
+        // Requests without responder must time out
+        messenger.subscribe(CHANNEL + ":empty").requestTimeout(50, TimeUnit.MILLISECONDS);
+        final CompletionException timeout = assertThrows(CompletionException.class, () -> messenger.request(CHANNEL + ":empty", MESSAGE).join());
+        assertTrue(timeout.getCause() instanceof TimeoutException);
+
+        // Native replies are never received from the reply channel
+        final TestMessenger nativeMessenger = new TestMessenger();
+        nativeMessenger.start(new TestBroker() {
+            @Override
+            protected boolean onRequest(@NotNull String channel, @NotNull ByteBuffer data) throws IOException {
+                receive(channel, data, "inbox");
+                return true;
+            }
+        });
+        nativeMessenger.subscribe(CHANNEL).respond((channel, lines) -> lines);
+        assertArrayEquals(new String[] { MESSAGE }, nativeMessenger.request(CHANNEL, MESSAGE).join());
+        assertFalse(nativeMessenger.getChannels().containsKey(nativeMessenger.getReplyChannel()));
+
+        // Immediate replies must not be lost while the reply channel is being subscribed
+        final Set<String> listening = ConcurrentHashMap.newKeySet();
+        final TestMessenger asyncMessenger = new TestMessenger();
+        asyncMessenger.start(new TestBroker() {
+            @Override
+            protected boolean isAsyncSubscribe() {
+                return true;
+            }
+
+            @Override
+            protected void onSubscribe(@NotNull String... channels) {
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> {
+                    listening.addAll(List.of(channels));
+                    subscribed(channels);
+                });
+            }
+
+            @Override
+            protected void onSend(@NotNull String channel, byte[] data) throws IOException {
+                if (listening.contains(channel)) {
+                    receive(channel, data);
+                }
+            }
+        });
+        asyncMessenger.subscribe(CHANNEL).requestTimeout(5, TimeUnit.SECONDS).respond((channel, lines) -> lines);
+        asyncMessenger.getBroker().awaitSubscription(CHANNEL).join();
+        assertArrayEquals(new String[] { MESSAGE }, asyncMessenger.request(CHANNEL, MESSAGE).join());
+    }
+
+    public static class Status {
+        private final UUID id;
+        private final String name;
+        private final long level;
+
+        public Status(UUID id, String name, long level) {
+            this.id = id;
+            this.name = name;
+            this.level = level;
+        }
+    }
+
+    public static class Update {
+        private final UUID id;
+        private final String name;
+        private final int level;
+        private final long time;
+        private final boolean online;
+        private final Double score;
+        private final List<Object> values;
+
+        public Update(UUID id, String name, int level, long time, boolean online, Double score, List<Object> values) {
+            this.id = id;
+            this.name = name;
+            this.level = level;
+            this.time = time;
+            this.online = online;
+            this.score = score;
+            this.values = values;
+        }
+    }
 }